@@ -0,0 +1,53 @@
+package hanoi;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of getting an AIPlayer ready, for each game mode. The solver file is made once in a
+ * temporary folder before timing, and players share it through SolverCache, so these time
+ * getting a player ready from results that are already there.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AIPlayerBenchmark {
+
+    /**
+     * Makes the solver file.
+     */
+    @Setup
+    public void setup(){
+        String folder = System.getProperty("hanoi.cache", System.getProperty("java.io.tmpdir") + File.separator + "hanoi-bench");
+        System.setProperty("hanoi.cache", folder);
+        SolverFile.load(3);
+    }
+
+    @Benchmark
+    public AIPlayer both(){
+        return new AIPlayer();
+    }
+
+    @Benchmark
+    public AIPlayer demo(){
+        return AIPlayer.forDemo();
+    }
+
+    @Benchmark
+    public AIPlayer versus(){
+        return AIPlayer.forVersus();
+    }
+}
@@ -0,0 +1,31 @@
+package hanoi;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the gc profiler turned on, so every result comes with its
+ * allocation rate (bytes allocated per operation) next to its throughput. Takes the same
+ * arguments as org.openjdk.jmh.Main, e.g. a benchmark name to run only that one.
+ */
+public class Benchmarks {
+
+    /**
+     * Runs the benchmarks.
+     * @param args JMH command line options.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(options);
+        if(options.getIncludes().isEmpty()){
+            builder.include("hanoi\\..*Benchmark\\.");
+        }
+        builder.addProfiler(GCProfiler.class);
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package hanoi;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of finding ways to complete the game in a bounded number of moves (the versus
+ * moves): the serial search in SolutionSet, the ParallelEnumerator, and the SolutionSampler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnumerationBenchmark {
+
+    @Param({"20", "24"})
+    public int maxMoves; //Solutions must take fewer moves than this.
+
+    private ForkJoinPool pool; //The pool for the parallel search, one thread per core.
+    private SolutionSampler sampler; //A sampler that's already counted, for timing single samples.
+    private Random random; //The random number generator for sampling.
+
+    /**
+     * Sets up the pool and sampler.
+     */
+    @Setup(Level.Trial)
+    public void setup(){
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        sampler = new SolutionSampler(3, maxMoves - 1);
+        random = new Random(221);
+    }
+
+    /**
+     * Shuts the pool down.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        pool.shutdown();
+    }
+
+    /**
+     * The serial search the game uses (always under 20 moves and 101 solutions), without SolverCache.
+     */
+    @Benchmark
+    public int serialCreateAllMoves(){
+        return SolutionSet.search(3, 3).size();
+    }
+
+    @Benchmark
+    public int parallelFirst101(){
+        return new ParallelEnumerator(3, maxMoves, 101, 4).enumerate(pool).size();
+    }
+
+    @Benchmark
+    public int parallelAll(){
+        return new ParallelEnumerator(3, maxMoves, Integer.MAX_VALUE, 4).enumerate(pool).size();
+    }
+
+    @Benchmark
+    public long samplerCount(){
+        return new SolutionSampler(3, maxMoves - 1).getTotal();
+    }
+
+    @Benchmark
+    public ArrayList<GameState> samplerDraw(){
+        return sampler.sample(random);
+    }
+}
@@ -0,0 +1,81 @@
+package hanoi;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times the serial search for ways to complete a game (SolutionSet.search) against the
+ * ParallelEnumerator, and prints the speedup. Run with no arguments for the default sizes, or
+ * with: disks maxMoves limit splitDepth.
+ */
+public class EnumerationSpeedup {
+
+    private static final int WARMUP = 3; //Runs thrown away before timing, so the JIT has compiled the search.
+    private static final int RUNS = 7; //Timed runs. The median is reported.
+
+    /**
+     * Runs the benchmark.
+     * @param args optional: disks maxMoves limit splitDepth
+     */
+    public static void main(String[] args){
+        int disks = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int maxMoves = args.length > 1 ? Integer.parseInt(args[1]) : 28;
+        int limit = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        int splitDepth = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        //The search the game runs: 3 disks, under 20 moves, stops after 101 solutions.
+        double serialGame = median(new Runnable() {
+            public void run() {
+                SolutionSet.search(3, 3);
+            }
+        });
+        double parallelGame = median(enumeration(new ParallelEnumerator(3, 20, 101, 4), new ForkJoinPool(threads)));
+        System.out.printf("SolutionSet.search (3 disks, <20 moves, 101 solutions): %.2f ms%n", serialGame);
+        System.out.printf("ParallelEnumerator, %d threads, same bounds:                %.2f ms (%.2fx)%n",
+                threads, parallelGame, serialGame / parallelGame);
+
+        //A bigger search, on one thread and on every core.
+        ParallelEnumerator enumerator = new ParallelEnumerator(disks, maxMoves, limit, splitDepth);
+        double oneThread = median(enumeration(enumerator, new ForkJoinPool(1)));
+        double allThreads = median(enumeration(enumerator, new ForkJoinPool(threads)));
+        int found = enumerator.enumerate(new ForkJoinPool(threads)).size();
+        System.out.printf("%d disks, <%d moves, limit %d, split at %d: %d solutions%n",
+                disks, maxMoves, limit, splitDepth, found);
+        System.out.printf("  1 thread:   %.2f ms%n", oneThread);
+        System.out.printf("  %d threads: %.2f ms (%.2fx)%n", threads, allThreads, oneThread / allThreads);
+    }
+
+    /**
+     * Wraps a search as something that can be timed.
+     * @param enumerator the search.
+     * @param pool the pool to run it on.
+     * @return the search as a Runnable.
+     */
+    private static Runnable enumeration(final ParallelEnumerator enumerator, final ForkJoinPool pool){
+        return new Runnable() {
+            public void run() {
+                enumerator.enumerate(pool);
+            }
+        };
+    }
+
+    /**
+     * Times a piece of work.
+     * @param work the work to time.
+     * @return the median time of the timed runs, in milliseconds.
+     */
+    private static double median(Runnable work){
+        for(int i = 0; i < WARMUP; i++){
+            work.run();
+        }
+        double[] times = new double[RUNS];
+        for(int i = 0; i < RUNS; i++){
+            long start = System.nanoTime();
+            work.run();
+            times[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+}
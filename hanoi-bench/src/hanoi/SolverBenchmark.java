@@ -0,0 +1,66 @@
+package hanoi;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of making the best possible list of moves (the demo moves) for different numbers of
+ * disks: playing the whole solution through a cursor, and jumping straight to a move or a state.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SolverBenchmark {
+
+    @Param({"3", "10", "20"})
+    public int disks; //The number of disks in the game.
+
+    private OptimalMoves solution; //The solution jumped around in.
+    private long k; //The move jumped to, changed every time.
+
+    /**
+     * Sets up the solution.
+     */
+    @Setup
+    public void setup(){
+        solution = new OptimalMoves(disks);
+        k = 0;
+    }
+
+    /**
+     * Hands out every move of the solution, one after the other.
+     */
+    @Benchmark
+    public void allMoves(Blackhole hole){
+        OptimalMoves moves = new OptimalMoves(disks);
+        while(moves.hasNext()){
+            hole.consume(moves.next());
+        }
+    }
+
+    @Benchmark
+    public int[] moveAt(){
+        k = (k * 6364136223846793005L + 1442695040888963407L) & Long.MAX_VALUE; //Jumps around the solution.
+        return solution.moveAt(k % solution.size());
+    }
+
+    @Benchmark
+    public GameState stateAt(){
+        k = (k * 6364136223846793005L + 1442695040888963407L) & Long.MAX_VALUE;
+        return solution.stateAt(k % (solution.size() + 1));
+    }
+}
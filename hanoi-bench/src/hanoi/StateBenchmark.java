@@ -0,0 +1,99 @@
+package hanoi;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of single GameState operations: checking a move, making a move, checking for a win,
+ * copying and hashing. Each operation plays the next move of the best solution, so the state
+ * keeps changing the way it does during a search.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StateBenchmark {
+
+    @Param({"3", "10", "32"})
+    public int disks; //The number of disks in the game.
+
+    private OptimalMoves solution; //The moves played, looped over.
+    private GameState state; //The state the moves are played on.
+    private int[][] moves; //The first moves of the solution, looked up ahead of time.
+    private int next; //The next move in moves.
+
+    /**
+     * Looks up the moves and sets up the starting state.
+     */
+    @Setup
+    public void setup(){
+        solution = new OptimalMoves(disks);
+        moves = new int[(int) Math.min(solution.size(), 1 << 16)][];
+        for(int i = 0; i < moves.length; i++){
+            moves[i] = solution.moveAt(i);
+        }
+        state = GameState.start(disks);
+        next = 0;
+    }
+
+    /**
+     * @return the next move, going back to the start once the looked up moves run out.
+     */
+    private int[] nextMove(){
+        if(next == moves.length){
+            next = 0;
+            state = GameState.start(disks);
+        }
+        return moves[next++];
+    }
+
+    @Benchmark
+    public boolean canMove(){
+        int[] move = nextMove();
+        boolean legal = state.canMove(move[0] + 1, move[1] + 1);
+        state.moveDisk(move[0] + 1, move[1] + 1);
+        return legal;
+    }
+
+    @Benchmark
+    public long moveDisk(){
+        int[] move = nextMove();
+        state.moveDisk(move[0] + 1, move[1] + 1);
+        return state.getState();
+    }
+
+    @Benchmark
+    public boolean isWin(){
+        int[] move = nextMove();
+        state.moveDisk(move[0] + 1, move[1] + 1);
+        return state.isWin();
+    }
+
+    @Benchmark
+    public GameState copyAndMove(){
+        int[] move = nextMove();
+        GameState copy = state.copy(); //What the search does for every child.
+        copy.moveDisk(move[0] + 1, move[1] + 1);
+        state = copy;
+        return copy;
+    }
+
+    @Benchmark
+    public int hashCodeAfterMove(){
+        int[] move = nextMove();
+        state.moveDisk(move[0] + 1, move[1] + 1);
+        return state.hashCode();
+    }
+}
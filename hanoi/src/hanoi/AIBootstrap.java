@@ -0,0 +1,100 @@
+package hanoi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * Gets the AIPlayer ready on a background thread, so the window doesn't freeze while the AI
+ * does its precomputation. Started as soon as the program starts (before the user picks a mode):
+ * the AI for each mode is queued, and once a mode is picked the other one is cancelled, so only
+ * the work the chosen mode needs is finished.
+ */
+public class AIBootstrap {
+
+    private int disks; //The number of disks in the game.
+    private int pegs; //The number of pegs in the game.
+    private double skill = -1; //The versus AI's skill level (see SkillPolicy), or -1 to play a whole solution.
+    private ExecutorService executor; //The background thread the AI is made on.
+    private CompletableFuture<AIPlayer> demo; //The AI for Demo mode.
+    private CompletableFuture<AIPlayer> versus; //The AI for Versus mode.
+
+    /**
+     * Constructor for a 3-disk 3-peg game.
+     */
+    public AIBootstrap() {
+        this(3, 3);
+    }
+
+    /**
+     * Constructor
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     */
+    public AIBootstrap(int disks, int pegs) {
+        this(disks, pegs, -1);
+    }
+
+    /**
+     * Constructor
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @param skill the versus AI's skill level from 0 to 1 (see SkillPolicy), or -1 for the AI that plays a whole solution.
+     */
+    public AIBootstrap(int disks, int pegs, double skill) {
+        this.disks = disks;
+        this.pegs = pegs;
+        this.skill = skill;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "hanoi-ai");
+                thread.setDaemon(true); //Doesn't stop the program from closing.
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts getting the AI for both modes ready, cheapest first.
+     */
+    public void start(){
+        demo = CompletableFuture.supplyAsync(new Supplier<AIPlayer>() {
+            public AIPlayer get() {
+                return AIPlayer.forDemo(disks, pegs);
+            }
+        }, executor);
+        versus = CompletableFuture.supplyAsync(new Supplier<AIPlayer>() {
+            public AIPlayer get() {
+                return skill >= 0 ? AIPlayer.forVersus(disks, pegs, skill) : AIPlayer.forVersus(disks, pegs);
+            }
+        }, executor);
+    }
+
+    /**
+     * Picks Demo mode: cancels the Versus AI if it hasn't been made yet.
+     * @return the Demo AI, once it's ready.
+     */
+    public CompletableFuture<AIPlayer> demo(){
+        versus.cancel(false);
+        return demo;
+    }
+
+    /**
+     * Picks Versus mode: cancels the Demo AI if it hasn't been made yet.
+     * @return the Versus AI, once it's ready.
+     */
+    public CompletableFuture<AIPlayer> versus(){
+        demo.cancel(false);
+        return versus;
+    }
+
+    /**
+     * Picks Single Player mode, which needs no AI: cancels both.
+     */
+    public void none(){
+        demo.cancel(false);
+        versus.cancel(false);
+    }
+}
@@ -1,7 +1,7 @@
 package hanoi;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -9,212 +9,403 @@ import java.util.concurrent.ThreadLocalRandom;
  */
 public class AIPlayer{
 
+    public static final int SAMPLED_DISKS = 5; //The most disks the solver file keeps versus solutions for.
+
+    private int disks; //The number of disks in the game.
+    private int pegs; //The number of pegs in the game.
+
     //==================== Demo specific =====================
 
-    LinkedList<int[]> moves; //The moves the AI must do to win as fast as possible.
+    MoveSource moves; //The moves the AI must do to win as fast as possible, worked out one at a time.
 
     //=================== Versus specific ====================
 
-    ArrayList<ArrayList<GameState>> allStates; //Holds a list of 100 possible games.
-    ArrayList<GameState> randMoves; //Picked randomly from allStates, represents an entire set of moves that can complete a game.
-    LinkedList<int[]> readableRandMoves; //randMoves, converted into a format readable by HanoiMain.
-    AITree<GameState> moveCreator; //A tree that holds the possible moves
+    private SolverFile solverFile; //Precomputed solutions and distances, shared through SolverCache. Got the first time it's needed.
+    private DistanceTable distanceTable; //The distance of every state to the win (for more than 3 pegs), shared through SolverCache.
+    private GameState lastState; //The last state a distance was worked out for with the table (null before the first).
+    private long lastDistance; //Its distance, so the next state (usually a move away) is found from it with two lookups.
+    SolutionSet solutions; //Up to 101 possible games, shared through SolverCache. Got by createAllMoves().
+    MoveRing randMoves; //The versus moves left to do, picked randomly from the solver file. Reused from game to game.
+    private int[] randMove = new int[2]; //The move handed out by getRandMove, reused for every move.
+    private SkillPolicy policy; //Picks the versus moves one at a time for an AI with a skill level (null if it plays randMoves).
+    private ByteBuffer sharedMoves; //A read-only view of the best moves kept in SolverCache; its position is this player's place in them (null if it plays randMoves).
+    private MoveSource bestMoves; //The best moves of a game too big to keep them, worked out one at a time (null if it plays randMoves).
 
     //==================================================
 
+    private long precomputeNanos; //How long the constructor took to get the AI ready.
+
+    private static final Metrics.Histogram CONSTRUCT = Metrics.histogram("ai.construct"); //Times the constructor.
+    private static final Metrics.Histogram HINT = Metrics.histogram("ai.hint"); //Times getHint.
+
     /**
-     * Constructor for AIPlayer
+     * Constructor for AIPlayer. Gets the AI ready for both Demo and Versus modes of a 3-disk 3-peg game.
      */
     public AIPlayer() {
-        moves = new LinkedList<>();
-        allStates = new ArrayList<>();
-        createMoves(3,0,2,1);
-        createAllMoves();
+        this(3, 3, true, true);
     }
 
     /**
-     * Creates the 'moves' variable. Finds best possible list of moves to complete a Hanoi puzzle for the demo.
-     * @param n the number of disks to be moved.
-     * @param frStack the stack you're taking a disk from.
-     * @param toStack the stack you want the disk to be placed on.
-     * @param spStack the third stack, used for 'storage'.
+     * Constructor for AIPlayer that only does the work a game mode needs.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @param demo true to get the demo moves ready.
+     * @param versus true to pick the versus moves.
      */
-    private void createMoves(int n, int frStack, int toStack, int spStack){
-        int[] fromTo = new int[2];
-        fromTo[0] = frStack;
-        fromTo[1] = toStack;
+    private AIPlayer(int disks, int pegs, boolean demo, boolean versus) {
+        this(disks, pegs, demo, versus, -1);
+    }
 
-        if(n ==1){
-            moves.addLast(fromTo);
+    /**
+     * Constructor for AIPlayer that only does the work a game mode needs.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @param demo true to get the demo moves ready.
+     * @param versus true to get the versus moves ready.
+     * @param skill the versus AI's skill level (see SkillPolicy), or -1 to play a whole solution picked at the start.
+     */
+    private AIPlayer(int disks, int pegs, boolean demo, boolean versus, double skill) {
+        long start = System.nanoTime();
+        this.disks = disks;
+        this.pegs = pegs;
+        randMoves = new MoveRing(64);
+        MoveSource best = solve(disks, pegs);
+        if(demo){
+            moves = best;
         }
-        else{
-            createMoves(n-1,frStack,spStack,toStack);
-            moves.addLast(fromTo);
-            createMoves(n-1,spStack,toStack,frStack);
+        if(versus && skill >= 0 && (pegs == 3 || DistanceTable.fits(disks, pegs))){
+            policy = new SkillPolicy(disks, pegs, skill);
+        }
+        else if(versus){
+            pickRandMoves(demo ? best.cursor() : best); //The demo keeps a cursor of its own.
+        }
+        precomputeNanos = System.nanoTime() - start;
+        if(Metrics.ENABLED){
+            CONSTRUCT.record(precomputeNanos);
         }
     }
 
     /**
-     * Gets the next move for a demo to do. Removes the move from the list of remaining moves.
-     * @return the move for the demo to do.
+     * Creates an AI that can only play Demo mode of a 3-disk 3-peg game.
+     * @return the AI.
      */
-    public int[] getMove(){
-        int[] move = moves.getFirst();
-        moves.removeFirst();
-        return move;
+    public static AIPlayer forDemo(){
+        return forDemo(3, 3);
     }
 
     /**
-     * Gets the next move for a versus AI to do. Removes the move from the list of remaining moves.
-     * @return the move for the versus AI to do.
+     * Creates an AI that can only play Demo mode.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @return the AI.
      */
-    public int[] getRandMove(){
-        int[] move = readableRandMoves.getFirst();
-        readableRandMoves.removeFirst();
-        return move;
+    public static AIPlayer forDemo(int disks, int pegs){
+        return new AIPlayer(disks, pegs, true, false);
     }
 
     /**
-     * @return a boolean that tells the computer whether there are any moves left (true or false)
+     * Creates an AI that can only play Versus mode of a 3-disk 3-peg game.
+     * @return the AI.
      */
-    public boolean movesLeft(){
-        if(moves.isEmpty()){
+    public static AIPlayer forVersus(){
+        return forVersus(3, 3);
+    }
+
+    /**
+     * Creates an AI that can only play Versus mode.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @return the AI.
+     */
+    public static AIPlayer forVersus(int disks, int pegs){
+        return new AIPlayer(disks, pegs, false, true);
+    }
+
+    /**
+     * Creates an AI that can only play Versus mode, picking each move when it's asked for as
+     * well as its skill level says (see SkillPolicy), with nothing worked out in advance. Games
+     * with more than 3 pegs too big for a DistanceTable have no skill level: the AI plays the
+     * best moves, as forVersus(disks, pegs) does.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @param skill the chance (0 to 1) of each move being one that gets closer to the win.
+     * @return the AI.
+     */
+    public static AIPlayer forVersus(int disks, int pegs, double skill){
+        if(skill < 0 || skill > 1){
+            throw new IllegalArgumentException("The skill must be from 0 to 1: " + skill);
+        }
+        return new AIPlayer(disks, pegs, false, true, skill);
+    }
+
+    /**
+     * Checks if forVersus(disks, pegs) would find everything it needs already made in SolverCache,
+     * so making the AI only takes a place in them. The cache can still drop a result just after.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @return true if nothing would have to be worked out or loaded.
+     */
+    public static boolean isVersusReady(int disks, int pegs){
+        if(!SolverCache.hasSolver(disks, pegs)){
             return false;
         }
-        return true;
+        if(pegs == 3 && disks <= SAMPLED_DISKS){
+            return SolverCache.hasSolverFile(disks, pegs);
+        }
+        return SolverCache.solver(disks, pegs).size() > SolverCache.MAX_BEST_MOVES || SolverCache.hasBestMoves(disks, pegs);
     }
 
     /**
-     * Assigns the allStates variable. Finds up to 100 possible ways to complete a hanoi game in under 20 moves.
+     * Gets the best moves for a game, with a cursor of the caller's own. The solver (and its
+     * tables) is made once per game size and shared through SolverCache.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @return OptimalMoves for three pegs, a FrameStewartSolver for more, at move 0.
      */
-    private void createAllMoves(){
+    public static MoveSource solve(int disks, int pegs){
+        return SolverCache.solver(disks, pegs).cursor();
+    }
 
-        int[][] rootData = new int[3][3];
-        rootData[0][0] = 1; //The size of the top piece of the first stack (0 = none, 1 = small, 2 = med, 3 = big)
-        rootData[0][1] = 2; //The size of the second-to-top piece of first stack
-        rootData[0][2] = 3; //The size of the third-to-top piece of first stack
+    /**
+     * @return how long it took to get the AI ready, in milliseconds.
+     */
+    public double getPrecomputeMillis(){
+        return precomputeNanos / 1e6;
+    }
 
-        for(int i = 1; i <= 2; i++){
-            for(int j = 0; j <= 2; j++){
-                rootData[i][j] = 0; //In starting position, the other two stacks have no disks.
+    /**
+     * Gets the next move for a demo to do. Moves past it in the list of remaining moves.
+     * @return the move for the demo to do.
+     */
+    public int[] getMove(){
+        return moves.next();
+    }
+
+    /**
+     * Gets the next move for a versus AI to do. Removes the move from the list of remaining moves.
+     * @return the move for the versus AI to do. The array may be handed out again by the next
+     *         call, so read it before asking for the next move.
+     * @throws NoSuchElementException if there are no moves left.
+     */
+    public int[] getRandMove(){
+        if(policy != null){
+            if(policy.isDone()){
+                throw new NoSuchElementException("The versus AI has no moves left.");
             }
+            int[] move = policy.next();
+            randMove[0] = move[0];
+            randMove[1] = move[1];
+            return randMove;
         }
+        if(sharedMoves != null){
+            if(!sharedMoves.hasRemaining()){
+                throw new NoSuchElementException("The versus AI has no moves left.");
+            }
+            int move = sharedMoves.get();
+            randMove[0] = MoveRing.from(move);
+            randMove[1] = MoveRing.to(move);
+            return randMove;
+        }
+        if(bestMoves != null){
+            if(!bestMoves.hasNext()){
+                throw new NoSuchElementException("The versus AI has no moves left.");
+            }
+            return bestMoves.next();
+        }
+        int move = randMoves.poll();
+        if(move < 0){
+            throw new NoSuchElementException("The versus AI has no moves left.");
+        }
+        randMove[0] = MoveRing.from(move);
+        randMove[1] = MoveRing.to(move);
+        return randMove;
+    }
 
-        GameState rootState = new GameState(rootData);
+    /**
+     * @return a boolean that tells the computer whether there are any moves left (true or false)
+     */
+    public boolean movesLeft(){
+        return moves.hasNext();
+    }
 
-        this.moveCreator = new AITree<>(rootState);
-        ArrayList<GameState> currMoves = new ArrayList<>();
-        currMoves.add(rootState);
+    /**
+     * Jumps the demo to a move without doing the moves before it.
+     * @param k the number of moves done after the jump (0 is the start, getMoveCount() is the win).
+     * @return the state of the board after k moves, worked out straight from k.
+     */
+    public GameState seek(long k){
+        moves.seek(k);
+        return moves.stateAt(k);
+    }
 
-        createAllMovesRecurse(0, currMoves, moveCreator.getRoot()); //Calls the recursive method.
+    /**
+     * @return the number of demo moves already handed out by getMove.
+     */
+    public long getMoveIndex(){
+        return moves.position();
+    }
 
-        pickRandMoves(); //Picks randomly from the available ways to complete the game.
+    /**
+     * @return the number of moves in the whole demo.
+     */
+    public long getMoveCount(){
+        return moves.size();
+    }
 
+    /**
+     * @return a boolean that tells the computer whether the versus AI has any moves left (true or false)
+     */
+    public boolean randMovesLeft(){
+        if(policy != null){
+            return !policy.isDone();
+        }
+        if(sharedMoves != null){
+            return sharedMoves.hasRemaining();
+        }
+        if(bestMoves != null){
+            return bestMoves.hasNext();
+        }
+        return !randMoves.isEmpty();
     }
 
     /**
-     * Recursive method, fills allStates variable and moveCreator variable with possible moves and ways to
-     * complete a hanoi puzzle.
-     * @param n the amount of moves taken so far.
-     * @param lastMoves A list of all the last moves done.
-     * @param currParent The parent that the next move will be a child of in the tree of moves.
+     * Gets up to 101 possible ways to complete a hanoi game in under 20 moves (searched for the
+     * first time any player asks, then shared). Not needed to play (the sampler picks the versus
+     * moves), but keeps the tree of moves for anyone who wants it.
+     * @return the solutions.
      */
-    private void createAllMovesRecurse(int n, ArrayList<GameState> lastMoves, AITree.Node<GameState> currParent){
+    public SolutionSet createAllMoves(){
+        if(solutions == null){
+            solutions = SolverCache.solutions(disks, pegs);
+        }
+        return solutions;
+    }
 
-        int lastIndex = lastMoves.size() - 1;
-        GameState lastMove = lastMoves.get(lastIndex);
-        GameState currMove;
+    /**
+     * Makes one of the games found by createAllMoves the versus AI's moves.
+     * @param index which game (0 to createAllMoves().size() - 1).
+     */
+    public void useFoundMoves(int index){
+        policy = null;
+        sharedMoves = null;
+        bestMoves = null;
+        randMoves.clear();
+        randMoves.addAll(createAllMoves().getMoves(index));
+    }
 
-        if(n >= 20 || allStates.size() > 100){ //Tells the recursive function to stop if a current game method has exceeded 20 moves or if 100 solutions have already been found.
+    /**
+     * Chooses a random list of moves from the solutions in the solver file, assigns it to the global randMoves.
+     * (The solutions were picked uniformly by a SolutionSampler when the file was made.) The file keeps the
+     * moves packed the same way as randMoves, so they're copied straight in. Games too big to sample play
+     * the best moves instead.
+     * @param best the best moves, for a game too big to sample (a cursor the player can keep).
+     */
+    private void pickRandMoves(MoveSource best){
+        if(pegs != 3 || disks > SAMPLED_DISKS){
+            pickBestMoves(best);
             return;
         }
+        SolverFile file = getSolverFile();
+        ByteBuffer sample = file.getSample(ThreadLocalRandom.current().nextInt(file.getSampleCount()));
+
+        randMoves.clear();
+        randMoves.addAll(sample);
+    }
 
-        if(lastMove.isWin()){ //Checks to see if a solution was found.
-            allStates.add(lastMoves);
+    /**
+     * Makes the best possible moves the versus moves. They're read from the copy SolverCache
+     * shares between every player, keeping only a place in it. Games with more than
+     * SolverCache.MAX_BEST_MOVES moves are played straight from a solver, one move at a time, so
+     * nothing is copied however big the game is.
+     * @param best the best moves (a cursor the player can keep).
+     */
+    private void pickBestMoves(MoveSource best){
+        randMoves.clear();
+        if(best.size() <= SolverCache.MAX_BEST_MOVES){
+            sharedMoves = SolverCache.bestMoves(disks, pegs); //A view of its own, so its position is this player's alone.
             return;
         }
+        bestMoves = best;
+    }
 
-        for(int i = 1; i <= 3; i++) {
-            for (int j = 1; j <= 3; j++) {
-                if(j!=i) {
-                    if (lastMove.canMove(i, j)) {
-
-                        int[][] currMoveData = clone(lastMove.getGameState());
-                        currMove = new GameState(currMoveData);
-                        currMove.moveDisk(i, j);
+    /**
+     * Gets the fewest moves needed to complete the game from a state.
+     * @param state the state (with this AI's number of disks and pegs).
+     * @return the number of moves.
+     */
+    public int distanceToGoal(GameState state){
+        if(pegs == 3){
+            return (int) HintOracle.distanceToGoal(state);
+        }
+        return (int) tableDistance(state);
+    }
 
-                        if(currMove.isNotRedundant(lastMoves)) { //Does not allow AI to make redundant moves (e.g. looping endlessly by moving a peg back and forth)
-                            ArrayList<GameState> currLastMoves = new ArrayList<>(lastMoves);
-                            currLastMoves.add(currMove);
-                            AITree.Node<GameState> newParent = currParent.addChild(currMove);
-                            createAllMovesRecurse(n + 1, currLastMoves, newParent);
-                        }
-                    }
-                }
-            }
+    /**
+     * Gets the exact distance of a state to the win from the distance table. If the state is the
+     * last one asked about or a move from it, as it is after every move of a game, that's two
+     * lookups; otherwise the table walks the best moves to the win once.
+     * @param state the state (with this AI's number of disks and pegs).
+     * @return the number of moves.
+     */
+    private long tableDistance(GameState state){
+        DistanceTable table = getDistanceTable();
+        long distance = lastState == null ? -1 : table.distanceFrom(state, lastState, lastDistance);
+        if(distance < 0){
+            distance = table.distance(state);
         }
+        lastState = state.copy(); //The caller may go on moving disks on its own state.
+        lastDistance = distance;
+        return distance;
     }
 
     /**
-     * Clones a 2D array so it may be altered without changing the original.
-     * @param toClone the 2D array that is going to be duplicated.
-     * @return the duplicated 2D array.
+     * Finds the best next move from wherever the disks are on a board, e.g. after the user has
+     * left the path the demo plays. Worked out straight from the position with three pegs, or
+     * from the distance table with more.
+     * @param board the board (with this AI's number of disks and pegs).
+     * @return the hint.
      */
-    private int[][] clone(int[][] toClone){
-        int[][] newArray = new int[3][3];
-        for(int i = 0; i < 3; i++){
-            for(int j = 0; j < 3; j++){
-                newArray[i][j] = toClone[i][j];
+    public Hint getHint(BoardModel board){
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        Hint hint;
+        if(pegs == 3){
+            hint = HintOracle.hint(board);
+        }
+        else{
+            GameState state = board.toGameState();
+            int[] move = getDistanceTable().bestMove(state);
+            if(move == null){
+                hint = new Hint(-1, -1, -1, 0);
+            }
+            else{
+                hint = new Hint(move[0], move[1], board.top(move[0]), tableDistance(state));
             }
         }
-        return newArray;
+        if(Metrics.ENABLED){
+            HINT.recordSince(start);
+        }
+        return hint;
     }
 
     /**
-     * Chooses a random list of moves from the global allStates variable, assigns it to the global randMoves.
+     * Getter for distanceTable. Gets it from SolverCache (which builds it if no player has yet) the first time it's needed.
+     * @return distanceTable
      */
-    private void pickRandMoves(){
-        int max = allStates.size();
-        int index = ThreadLocalRandom.current().nextInt(0, max);
-        randMoves = allStates.get(index);
-        makeRandMovesReadable();
+    private DistanceTable getDistanceTable(){
+        if(distanceTable == null){
+            distanceTable = SolverCache.distanceTable(disks, pegs);
+        }
+        return distanceTable;
     }
 
     /**
-     * Converts the randMoves variable into one readable by HanoiMain.
-     * (HanoiMain reads a move as an int array with a length of 2, the
-     * first int being the 'from' stack and the second being the 'to' stack.)
+     * Getter for solverFile. Gets it from SolverCache (which loads or makes it if no player has yet) the first time it's needed.
+     * @return solverFile
      */
-    private void makeRandMovesReadable(){
-        readableRandMoves = new LinkedList<>();
-        int from = 0;
-        int to = 0;
-        for(int i = 0; i < randMoves.size() - 1 ; i++){
-            int j = i + 1;
-            int[][] before = randMoves.get(i).getGameState(); //Before the move took place
-            int[][] after = randMoves.get(j).getGameState(); //After the move took place
-
-            for(int k = 0; k < 3; k++){
-                if (before[k][0] > after[k][0] && after[k][0]!=0) { //If after now has a smaller disk than before
-                    to = k;
-                }
-                else if (before[k][0] < after[k][0] && before[k][0]!=0) { //If after lost a smaller disk.
-                    from = k;
-                }
-                if (before[k][0] == 0 && after[k][0] != 0){ //If after has a disk when before had none.
-                    to = k;
-                }
-                else if (before[k][0] != 0 && after[k][0] == 0){ //If after does not have any disks when before did.
-                    from = k;
-                }
-            }
-
-            int[] readableMove = new int[2];
-            readableMove[0] = from;
-            readableMove[1] = to;
-            readableRandMoves.add(readableMove);
+    private SolverFile getSolverFile(){
+        if(solverFile == null){
+            solverFile = SolverCache.solverFile(disks, pegs);
         }
+        return solverFile;
     }
-
-
 }
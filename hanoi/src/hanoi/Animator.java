@@ -0,0 +1,266 @@
+package hanoi;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import javax.swing.Timer;
+
+/**
+ * Animates disks moving between stacks, for every board in the program, from one Swing timer
+ * that fires about 60 times a second. Each board has a Track: a queue of flights, played one at
+ * a time in the order the moves were made, while the boards' models (and so the game) are
+ * already past them. A flight lifts the disk straight up above the pegs, slides it across and
+ * drops it onto its new stack.
+ *
+ * Where the disk is along its path is worked out from the clock rather than by counting frames,
+ * so late frames don't slow the animation down. The flights are records made up front and reused,
+ * so running the animation doesn't allocate. The timer only runs while there's something to move.
+ * Everything here runs on the event thread, like the rest of the GUI.
+ */
+public class Animator {
+
+    public static final int FRAME = 16; //The time between frames in milliseconds (about 60 a second).
+    public static final int DURATION = 300; //How long a flight takes by default, in milliseconds.
+
+    private static final Metrics.Histogram FRAME_TIME = Metrics.histogram("ui.animation.frame"); //Times a frame.
+
+    private Timer timer; //Fires every frame while any track has flights.
+    private ArrayList<Track> tracks = new ArrayList<>(); //The tracks of every animated board.
+
+    /**
+     * Constructor
+     */
+    public Animator() {
+        timer = new Timer(FRAME, new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                frame();
+            }
+        });
+        timer.setCoalesce(true); //Frames the event thread couldn't keep up with are dropped, not queued.
+    }
+
+    /**
+     * Makes a track for a board.
+     * @param capacity the most flights the track queues. When it's full the oldest flight is
+     *                 finished straight away to make room.
+     * @return the track.
+     */
+    public Track newTrack(int capacity){
+        Track track = new Track(this, capacity);
+        tracks.add(track);
+        return track;
+    }
+
+    /**
+     * Moves every track's current flight along, and stops the timer once no track has flights left.
+     */
+    private void frame(){
+        long now = System.nanoTime();
+        boolean busy = false;
+        for(int i = 0; i < tracks.size(); i++){
+            busy |= tracks.get(i).step(now);
+        }
+        if(!busy){
+            timer.stop();
+        }
+        if(Metrics.ENABLED){
+            FRAME_TIME.recordSince(now);
+        }
+    }
+
+    /**
+     * Starts the timer (if it isn't already running) because a track has a flight.
+     */
+    private void wake(){
+        if(!timer.isRunning()){
+            timer.start();
+        }
+    }
+
+    /**
+     * The queue of flights of one board.
+     */
+    public static class Track {
+
+        private Animator animator; //The animator running this track.
+        private Flight[] flights; //The queue, as a ring. The records are made once and reused.
+        private int head; //The index of the current flight.
+        private int size; //The number of flights queued (including the current one).
+        private long duration = DURATION * 1000000L; //How long a flight takes, in nanoseconds.
+
+        /**
+         * Constructor. Use Animator.newTrack to make a track.
+         * @param animator the animator running the track.
+         * @param capacity the most flights the track queues.
+         */
+        private Track(Animator animator, int capacity) {
+            this.animator = animator;
+            this.flights = new Flight[Math.max(1, capacity)];
+            for(int i = 0; i < flights.length; i++){
+                flights[i] = new Flight();
+            }
+        }
+
+        /**
+         * Queues a disk to fly to a new spot. It starts from wherever it is once the flights
+         * before it are done. If flights take no time, the disk is put there straight away.
+         * @param disk the disk.
+         * @param x the X coordinate the disk ends at.
+         * @param y the Y coordinate the disk ends at.
+         * @param liftY the Y coordinate the disk is lifted to before sliding across.
+         */
+        public void fly(Disk disk, int x, int y, int liftY){
+            if(duration == 0){
+                finish();
+                disk.setLocation(x, y);
+                disk.sendToFront();
+                return;
+            }
+            if(size == flights.length){
+                land(flights[head]);
+                head = (head + 1) % flights.length;
+                size--;
+            }
+            Flight flight = flights[(head + size) % flights.length];
+            flight.disk = disk;
+            flight.toX = x;
+            flight.toY = y;
+            flight.liftY = liftY;
+            flight.started = false;
+            size++;
+            animator.wake();
+        }
+
+        /**
+         * Puts every queued disk where its flights end, straight away (e.g. before the user picks
+         * a disk up, so they never pick up a disk that's still flying).
+         */
+        public void finish(){
+            while(size > 0){
+                land(flights[head]);
+                head = (head + 1) % flights.length;
+                size--;
+            }
+        }
+
+        /**
+         * Drops every queued flight without moving its disk (e.g. when the whole board is laid
+         * out again anyway).
+         */
+        public void clear(){
+            while(size > 0){
+                flights[head].disk = null;
+                head = (head + 1) % flights.length;
+                size--;
+            }
+        }
+
+        /**
+         * Sets how long a flight takes. Times under two frames turn the animation off, so the
+         * disks are put in place as soon as they move (e.g. for a fast demo).
+         * @param millis the time in milliseconds.
+         */
+        public void setDuration(int millis){
+            if(millis < 2 * FRAME){
+                finish();
+                millis = 0;
+            }
+            duration = millis * 1000000L;
+        }
+
+        /**
+         * @return true if there are flights still to be shown.
+         */
+        public boolean isBusy(){
+            return size > 0;
+        }
+
+        /**
+         * Moves the current flight along to where it should be now, starting the next flight
+         * when it lands.
+         * @param now the time of the frame (from System.nanoTime()).
+         * @return true if there are still flights left.
+         */
+        private boolean step(long now){
+            while(size > 0){
+                Flight flight = flights[head];
+                if(!flight.started){
+                    flight.start(now);
+                }
+                double t = (double) (now - flight.start) / duration;
+                if(t < 1){
+                    flight.moveTo(t);
+                    return true;
+                }
+                land(flight);
+                head = (head + 1) % flights.length;
+                size--;
+                now = Math.max(now, flight.start + duration);
+            }
+            return false;
+        }
+
+        /**
+         * Puts a flight's disk where the flight ends.
+         * @param flight the flight.
+         */
+        private void land(Flight flight){
+            if(!flight.started){
+                flight.disk.sendToFront();
+            }
+            flight.disk.setLocation(flight.toX, flight.toY);
+            flight.disk = null;
+        }
+    }
+
+    /**
+     * A disk flying from where it was to its spot on another stack: up to liftY, across, then down.
+     */
+    private static class Flight {
+
+        private Disk disk; //The disk flying (null when the record isn't in use).
+        private int fromX; //Where the disk started.
+        private int fromY;
+        private int toX; //Where the disk ends.
+        private int toY;
+        private int liftY; //How high the disk is lifted to slide across.
+        private int length; //The length of the whole path.
+        private long start; //When the flight started (from System.nanoTime()).
+        private boolean started; //False while the flight is waiting for the ones before it.
+
+        /**
+         * Starts the flight from wherever the disk is now.
+         * @param now the time (from System.nanoTime()).
+         */
+        private void start(long now){
+            fromX = disk.getX();
+            fromY = disk.getY();
+            liftY = Math.min(liftY, Math.min(fromY, toY));
+            length = (fromY - liftY) + Math.abs(toX - fromX) + (toY - liftY);
+            start = now;
+            started = true;
+            disk.sendToFront();
+        }
+
+        /**
+         * Puts the disk where it should be part of the way through the flight. The disk speeds up
+         * at the start and slows down at the end.
+         * @param t how far through the flight (0 to 1) in time.
+         */
+        private void moveTo(double t){
+            double eased = t * t * (3 - 2 * t);
+            int along = (int) Math.round(eased * length); //How far along the path the disk is.
+            int up = fromY - liftY;
+            int across = Math.abs(toX - fromX);
+            if(along <= up){
+                disk.setLocation(fromX, fromY - along);
+            }
+            else if(along <= up + across){
+                disk.setLocation(fromX + Integer.signum(toX - fromX) * (along - up), liftY);
+            }
+            else{
+                disk.setLocation(toX, liftY + (along - up - across));
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package hanoi;
+
+/**
+ * Something that wants to know when a BoardModel changes, e.g. a HanoiBoard drawing it.
+ */
+public interface BoardListener {
+
+    /**
+     * Called after a disk is moved.
+     * @param from the peg the disk came from.
+     * @param to the peg the disk went to.
+     * @param disk the disk (0 is the smallest).
+     */
+    void diskMoved(int from, int to, int disk);
+
+    /**
+     * Called after the whole board changed at once (reset or set to a state).
+     */
+    void boardReset();
+}
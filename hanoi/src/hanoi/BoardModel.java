@@ -0,0 +1,212 @@
+package hanoi;
+
+import java.util.ArrayList;
+
+/**
+ * The rules of a game of Hanoi without any graphics: which disks are on which peg, which moves
+ * are legal, and whether the game is won. Kept in plain int arrays so games can be played without
+ * a canvas. HanoiBoard listens to a BoardModel and moves its DiskStacks to match.
+ *
+ * Pegs are numbered from 0 (the same numbers HanoiMain uses for a move). Disks are numbered from
+ * 0 for the smallest.
+ */
+public class BoardModel {
+
+    private int disks; //The number of disks in the game.
+    private int pegs; //The number of pegs in the game.
+    private int[][] stacks; //stacks[p][i] is the disk i places up from the bottom of peg p.
+    private int[] heights; //heights[p] is the number of disks on peg p.
+    private ArrayList<BoardListener> listeners; //Told about every change to the board.
+
+    private static final Metrics.Counter MOVES = Metrics.counter("board.moves"); //Counts legal moves.
+    private static final Metrics.Histogram SET_STATE = Metrics.histogram("board.setState"); //Times setState, listeners included.
+
+    /**
+     * Constructor. Starts with every disk on the first peg.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     */
+    public BoardModel(int disks, int pegs) {
+        if(disks < 1 || pegs < 3){
+            throw new IllegalArgumentException("Need at least one disk and three pegs.");
+        }
+        this.disks = disks;
+        this.pegs = pegs;
+        this.stacks = new int[pegs][disks];
+        this.heights = new int[pegs];
+        this.listeners = new ArrayList<>();
+        fillStart();
+    }
+
+    /**
+     * Constructor for a 3-peg game.
+     * @param disks the number of disks in the game.
+     */
+    public BoardModel(int disks) {
+        this(disks, 3);
+    }
+
+    /**
+     * Tells the program whether or not a move is legal.
+     * @param from The peg that the disk is coming from.
+     * @param to The peg that the disk is going to.
+     * @return true if it's a legal move, false if it's illegal.
+     */
+    public boolean canMove(int from, int to){
+        if(from == to || from < 0 || from >= pegs || to < 0 || to >= pegs || heights[from] == 0){
+            return false;
+        }
+        return heights[to] == 0 || top(from) < top(to);
+    }
+
+    /**
+     * Moves the top disk of one peg onto another, if it's legal, and tells the listeners.
+     * @param from The peg that the disk is coming from.
+     * @param to The peg that the disk is going to.
+     * @return true if the disk was moved, false if the move was illegal.
+     */
+    public boolean move(int from, int to){
+        if(!canMove(from, to)){
+            return false;
+        }
+        if(Metrics.ENABLED){
+            MOVES.increment();
+        }
+        int disk = stacks[from][--heights[from]];
+        stacks[to][heights[to]++] = disk;
+        for(int i = 0; i < listeners.size(); i++){
+            listeners.get(i).diskMoved(from, to, disk);
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the board is in a winning state (all disks on last peg).
+     * @return true if it's a win, false if it's not
+     */
+    public boolean isWin(){
+        return heights[pegs - 1] == disks;
+    }
+
+    /**
+     * Gets the top disk of a peg.
+     * @param peg the peg.
+     * @return the top disk, or -1 if the peg is empty.
+     */
+    public int top(int peg){
+        if(heights[peg] == 0){
+            return -1;
+        }
+        return stacks[peg][heights[peg] - 1];
+    }
+
+    /**
+     * Gets a disk on a peg.
+     * @param peg the peg.
+     * @param level how many places up from the bottom of the peg (0 is the bottom).
+     * @return the disk.
+     */
+    public int diskAt(int peg, int level){
+        return stacks[peg][level];
+    }
+
+    /**
+     * Gets the number of disks on a peg.
+     * @param peg the peg.
+     * @return the number of disks.
+     */
+    public int height(int peg){
+        return heights[peg];
+    }
+
+    /**
+     * Puts every disk back on the first peg and tells the listeners.
+     */
+    public void reset(){
+        fillStart();
+        fireReset();
+    }
+
+    /**
+     * Puts the disks where a GameState says they are and tells the listeners.
+     * @param state the state (with the same number of disks and pegs as this board).
+     */
+    public void setState(GameState state){
+        if(state.getDisks() != disks || state.getPegs() != pegs){
+            throw new IllegalArgumentException("Expected " + disks + " disks on " + pegs + " pegs, got "
+                    + state.getDisks() + " on " + state.getPegs());
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        for(int p = 0; p < pegs; p++){
+            heights[p] = 0;
+        }
+        for(int disk = disks - 1; disk >= 0; disk--){ //Largest first, so every peg is filled bottom up.
+            int peg = state.pegOf(disk);
+            stacks[peg][heights[peg]++] = disk;
+        }
+        fireReset();
+        if(Metrics.ENABLED){
+            SET_STATE.recordSince(start);
+        }
+    }
+
+    /**
+     * @return the board as a GameState.
+     */
+    public GameState toGameState(){
+        int bits = GameState.bitsPerDisk(pegs);
+        long state = 0;
+        for(int p = 0; p < pegs; p++){
+            for(int i = 0; i < heights[p]; i++){
+                state |= (long) p << (bits * stacks[p][i]);
+            }
+        }
+        return new GameState(state, disks, pegs);
+    }
+
+    /**
+     * Adds a listener that is told about every change to the board.
+     * @param listener the listener.
+     */
+    public void addListener(BoardListener listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Getter for disks.
+     * @return disks
+     */
+    public int getDisks() {
+        return disks;
+    }
+
+    /**
+     * Getter for pegs.
+     * @return pegs
+     */
+    public int getPegs() {
+        return pegs;
+    }
+
+    /**
+     * Puts every disk on the first peg, largest at the bottom.
+     */
+    private void fillStart(){
+        for(int p = 0; p < pegs; p++){
+            heights[p] = 0;
+        }
+        for(int i = 0; i < disks; i++){
+            stacks[0][i] = disks - 1 - i;
+        }
+        heights[0] = disks;
+    }
+
+    /**
+     * Tells the listeners the whole board changed.
+     */
+    private void fireReset(){
+        for(int i = 0; i < listeners.size(); i++){
+            listeners.get(i).boardReset();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package hanoi;
+
+import acm.graphics.GObject;
+import acm.graphics.GRectangle;
+import acm.program.GraphicsProgram;
+
+import java.awt.*;
+
+/**
+ * Draws every peg and disk of a HanoiBoard straight from its BoardModel in one paint pass,
+ * instead of keeping a GRect on the canvas for every disk. Used for boards with many disks, where
+ * a GRect per disk (and moving it to the front on every move) makes repainting slow. After a move
+ * only the two pegs that changed are repainted; pegs outside the area being repainted are skipped.
+ *
+ * Pegs and disks are laid out the same way as Peg and DiskStack lay them out.
+ */
+public class BoardView extends GObject {
+
+    protected GraphicsProgram canvas; //The GraphicsProgram the board is drawn on.
+
+    private BoardModel model; //The board being drawn.
+    private int startX; //The X coordinate of the first peg.
+    private int startY; //The Y coordinate of the peg bases.
+    private int dx; //The distance between pegs.
+    private Color diskColor; //The fill color of the disks.
+    private int diskHeight; //The height of every disk.
+    private int[] widths; //widths[size] is the width of the disk of that size.
+    private int lifted = -1; //The peg whose top disk is picked up (drawn higher), or -1.
+
+    /**
+     * Constructor
+     * @param canvas the GraphicsProgram the board is drawn on (null if it's only painted offscreen).
+     * @param model the board to draw.
+     * @param x the X coordinate of the first peg.
+     * @param y the Y coordinate of the peg bases.
+     * @param dx the distance between pegs.
+     * @param diskColor the fill color of the disks.
+     */
+    public BoardView(GraphicsProgram canvas, BoardModel model, int x, int y, int dx, Color diskColor) {
+        this.canvas = canvas;
+        this.model = model;
+        this.startX = x;
+        this.startY = y;
+        this.dx = dx;
+        this.diskColor = diskColor;
+        this.diskHeight = Disk.heightFor(model.getDisks());
+        this.widths = new int[model.getDisks()];
+        for(int size = 0; size < widths.length; size++){
+            widths[size] = Disk.widthOf(size, widths.length);
+        }
+    }
+
+    /**
+     * Draws the pegs inside the area being repainted, and their disks.
+     * @param g the graphics to draw with.
+     */
+    @Override
+    public void paint(Graphics g){
+        Rectangle clip = g.getClipBounds();
+        Color outline = getColor();
+        for(int peg = 0; peg < model.getPegs(); peg++){
+            if(clip != null && !clip.intersects(pegRegion(peg))){
+                continue;
+            }
+            int x = pegX(peg);
+
+            g.setColor(outline);
+            g.fillRect(x + Peg.PEGBASE_WIDTH/2 - Peg.PEGPOLE_WIDTH/2, startY + Peg.PEGBASE_HEIGHT - Peg.PEGPOLE_HEIGHT,
+                    Peg.PEGPOLE_WIDTH, Peg.PEGPOLE_HEIGHT);
+            g.fillRect(x, startY, Peg.PEGBASE_WIDTH, Peg.PEGBASE_HEIGHT);
+
+            for(int level = 0; level < model.height(peg); level++){
+                int width = widths[model.diskAt(peg, level)];
+                int diskX = x + Disk.bigwidth/2 - width/2;
+                int diskY = startY - diskHeight*(level + 1);
+                if(peg == lifted && level == model.height(peg) - 1){
+                    diskY -= Disk.height;
+                }
+                g.setColor(diskColor);
+                g.fillRect(diskX, diskY, width, diskHeight);
+                g.setColor(outline);
+                g.drawRect(diskX, diskY, width, diskHeight);
+            }
+        }
+    }
+
+    /**
+     * @return the area the whole board is drawn in.
+     */
+    @Override
+    public GRectangle getBounds(){
+        Rectangle first = pegRegion(0);
+        return new GRectangle(first.x, first.y, dx*(model.getPegs() - 1) + first.width, first.height);
+    }
+
+    /**
+     * Tells the program which peg was clicked on (if any).
+     * @param x the X coordinate of the click.
+     * @param y the Y coordinate of the click.
+     * @return the peg, or -1 if the click wasn't on a stack of disks.
+     */
+    public int pegAt(double x, double y){
+        for(int peg = 0; peg < model.getPegs(); peg++){
+            int pegX = pegX(peg);
+            if(x >= pegX && x <= pegX + Disk.bigwidth && y <= startY && y >= startY - diskHeight*model.getDisks()){
+                return peg;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Picks up (or puts down) the top disk of a peg, and repaints the pegs that changed.
+     * @param peg the peg, or -1 to put the picked up disk down.
+     */
+    public void setLifted(int peg){
+        int old = lifted;
+        lifted = peg;
+        repaintPeg(old);
+        repaintPeg(peg);
+    }
+
+    /**
+     * Getter for lifted.
+     * @return the peg whose top disk is picked up, or -1.
+     */
+    public int getLifted(){
+        return lifted;
+    }
+
+    /**
+     * Repaints only the area of one peg.
+     * @param peg the peg (nothing is repainted for -1).
+     */
+    public void repaintPeg(int peg){
+        if(peg >= 0){
+            Rectangle region = pegRegion(peg);
+            canvas.getGCanvas().repaint(region.x, region.y, region.width, region.height);
+        }
+    }
+
+    /**
+     * Repaints the whole board.
+     */
+    public void repaintAll(){
+        GRectangle bounds = getBounds();
+        canvas.getGCanvas().repaint((int) bounds.getX(), (int) bounds.getY(), (int) bounds.getWidth() + 1, (int) bounds.getHeight() + 1);
+    }
+
+    /**
+     * Works out the X coordinate of a peg.
+     * @param peg the peg.
+     * @return the left edge of the peg's base.
+     */
+    private int pegX(int peg){
+        return startX + dx*peg;
+    }
+
+    /**
+     * Works out the area a peg and its disks (even a picked up one) are drawn in.
+     * @param peg the peg.
+     * @return the area.
+     */
+    private Rectangle pegRegion(int peg){
+        int poleTop = startY + Peg.PEGBASE_HEIGHT - Peg.PEGPOLE_HEIGHT;
+        int stackTop = startY - diskHeight*model.getDisks() - Disk.height;
+        int top = Math.min(poleTop, stackTop);
+        return new Rectangle(pegX(peg), top, Math.max(Peg.PEGBASE_WIDTH, Disk.bigwidth) + 1, startY + Peg.PEGBASE_HEIGHT - top + 1);
+    }
+}
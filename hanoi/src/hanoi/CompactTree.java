@@ -0,0 +1,212 @@
+package hanoi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A tree of GameStates stored as parallel arrays instead of one object per node. A node is just
+ * an index: its parent, first child and next sibling are ints and its state is a packed long, so
+ * each node takes 20 bytes. The Node class gives addChild/getChildren navigation as a view over
+ * the arrays.
+ */
+public class CompactTree {
+
+    public static final int NONE = -1; //The index used for "no node" (e.g. the parent of the root).
+
+    private int disks; //The number of disks in every state of the tree.
+    private int pegs; //The number of pegs in every state of the tree.
+    private int size; //The number of nodes in the tree.
+
+    private int[] parent; //parent[i] is the parent of node i.
+    private int[] firstChild; //firstChild[i] is the child of node i added last, or NONE.
+    private int[] nextSibling; //nextSibling[i] is the sibling of node i added just before it, or NONE.
+    private long[] payload; //payload[i] is the packed GameState of node i.
+
+    /**
+     * Constructor.
+     * @param rootData the state that will go into the root of the tree.
+     */
+    public CompactTree(GameState rootData) {
+        this(rootData, 1024);
+    }
+
+    /**
+     * Constructor.
+     * @param rootData the state that will go into the root of the tree.
+     * @param capacity the number of nodes to make room for. The tree grows if needed.
+     */
+    public CompactTree(GameState rootData, int capacity) {
+        capacity = Math.max(capacity, 1);
+        disks = rootData.getDisks();
+        pegs = rootData.getPegs();
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        payload = new long[capacity];
+        create(NONE, rootData.getState());
+    }
+
+    /**
+     * Adds a child to a node.
+     * @param node the index of the parent node.
+     * @param state the packed state the child will have.
+     * @return the index of the child.
+     */
+    public int addChild(int node, long state){
+        int child = create(node, state);
+        nextSibling[child] = firstChild[node];
+        firstChild[node] = child; //Children are kept newest first, getChildren puts them back in order.
+        return child;
+    }
+
+    /**
+     * Getter for the parent of a node.
+     * @param node the index of the node.
+     * @return the index of its parent, or NONE for the root.
+     */
+    public int getParent(int node){
+        return parent[node];
+    }
+
+    /**
+     * Getter for the first child of a node, in the order used by firstChild (newest first).
+     * @param node the index of the node.
+     * @return the index of its newest child, or NONE if it has none.
+     */
+    public int getFirstChild(int node){
+        return firstChild[node];
+    }
+
+    /**
+     * Getter for the next sibling of a node, in the order used by firstChild (newest first).
+     * @param node the index of the node.
+     * @return the index of the sibling added before it, or NONE if there isn't one.
+     */
+    public int getNextSibling(int node){
+        return nextSibling[node];
+    }
+
+    /**
+     * Getter for the packed state of a node.
+     * @param node the index of the node.
+     * @return the packed state.
+     */
+    public long getPayload(int node){
+        return payload[node];
+    }
+
+    /**
+     * @return the number of nodes in the tree.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return the number of bytes the arrays of the tree take up, including room not used yet.
+     */
+    public long memoryUsed(){
+        return (long) parent.length * (4 + 4 + 4 + 8);
+    }
+
+    /**
+     * Getter for root.
+     * @return a view of the root.
+     */
+    public Node getRoot() {
+        return new Node(this, 0);
+    }
+
+    /**
+     * Puts a new node at the end of the arrays.
+     * @param node the index of the parent.
+     * @param state the packed state of the new node.
+     * @return the index of the new node.
+     */
+    private int create(int node, long state){
+        if(size == parent.length){
+            int capacity = parent.length * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            payload = Arrays.copyOf(payload, capacity);
+        }
+        int index = size;
+        parent[index] = node;
+        firstChild[index] = NONE;
+        nextSibling[index] = NONE;
+        payload[index] = state;
+        size++;
+        return index;
+    }
+
+    /**
+     * A view of one node of the tree. Made on demand, holds only the tree and the index.
+     */
+    public static class Node {
+        private CompactTree tree; //The tree the node is in.
+        private int index; //The index of the node in the tree.
+
+        /**
+         * Constructor
+         * @param tree the tree the node is in.
+         * @param index the index of the node in the tree.
+         */
+        private Node(CompactTree tree, int index) {
+            this.tree = tree;
+            this.index = index;
+        }
+
+        /**
+         * Adds a child to the Node given data for the child.
+         * @param childData the data the child will have.
+         * @return the child's Node
+         */
+        public Node addChild(GameState childData){
+            return new Node(tree, tree.addChild(index, childData.getState()));
+        }
+
+        /**
+         * Getter for data.
+         * @return a new GameState holding the node's state.
+         */
+        public GameState getData() {
+            return new GameState(tree.payload[index], tree.disks, tree.pegs);
+        }
+
+        /**
+         * Getter for parent.
+         * @return parent, or null for the root.
+         */
+        public Node getParent() {
+            int parent = tree.parent[index];
+            if(parent == NONE){
+                return null;
+            }
+            return new Node(tree, parent);
+        }
+
+        /**
+         * Getter for children.
+         * @return a list of the node's children, in the order they were added.
+         */
+        public List<Node> getChildren() {
+            ArrayList<Node> children = new ArrayList<>();
+            for(int child = tree.firstChild[index]; child != NONE; child = tree.nextSibling[child]){
+                children.add(new Node(tree, child));
+            }
+            Collections.reverse(children); //The arrays keep them newest first.
+            return children;
+        }
+
+        /**
+         * Getter for index.
+         * @return the index of the node in the tree.
+         */
+        public int getIndex() {
+            return index;
+        }
+    }
+}
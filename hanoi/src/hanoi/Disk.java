@@ -12,7 +12,8 @@ public class Disk {
 
     protected GraphicsProgram canvas;
 
-    private int size; //Size of disk. 0 is small, 1 is med, 2 is large.
+    private int size; //Size of disk. 0 is small, 1 is med, 2 is large (with more disks, up to disks - 1).
+    private int width; //Width of the disk.
     private GRect disk; //Visual representation of the disk.
 
     public static int height = 30; //Height of all disks.
@@ -29,29 +30,60 @@ public class Disk {
      * @param color The color of the disk.
      */
     public Disk(GraphicsProgram canvas, int x, int y, int size, Color color) {
+        this(canvas, x, y, size, widthOf(size, 3), height, color);
+    }
+
+    /**
+     * Constructor for a disk of any size.
+     * @param canvas the GraphicsProgram that will visualize the disk.
+     * @param x X coordinate of disk on canvas
+     * @param y Y coordinate of disk on canvas
+     * @param size The size (0 for the smallest)
+     * @param width The width of the disk (see widthOf).
+     * @param diskHeight The height of the disk (see heightFor).
+     * @param color The color of the disk.
+     */
+    public Disk(GraphicsProgram canvas, int x, int y, int size, int width, int diskHeight, Color color) {
         this.canvas = canvas;
         this.size = size;
-        CreateDisk(x, y, size, color);
+        this.width = width;
+        CreateDisk(x, y, width, diskHeight, color);
+    }
+
+    /**
+     * Works out how wide a disk is, so that the smallest disk is smallwidth wide, the largest is
+     * bigwidth wide and the ones between are spread evenly. (With 3 disks: small, med and big.)
+     * @param size the size of the disk (0 for the smallest).
+     * @param disks the number of disks in the game.
+     * @return the width of the disk.
+     */
+    public static int widthOf(int size, int disks){
+        if(disks < 2){
+            return bigwidth;
+        }
+        return smallwidth + (bigwidth - smallwidth) * size / (disks - 1);
+    }
+
+    /**
+     * Works out how tall the disks are, so that a full stack still fits on a peg.
+     * @param disks the number of disks in the game.
+     * @return the height of every disk (height for 3 disks).
+     */
+    public static int heightFor(int disks){
+        return Math.max(2, Math.min(height, (Peg.PEGPOLE_HEIGHT - Peg.PEGBASE_HEIGHT - 10) / disks));
     }
 
     /**
      * Creates the disk and adds it to the canvas.
      * @param x the x coordinate of the disk.
      * @param y the y coordinate of the disk.
-     * @param size the size of the disk (0 for small, 1 for med, 2 for big)
+     * @param width the width of the disk.
+     * @param diskHeight the height of the disk.
      * @param color the color of the disk.
      */
-    private void CreateDisk(int x, int y, int size, Color color){
+    private void CreateDisk(int x, int y, int width, int diskHeight, Color color){
 
-        if (size < 1){
-            disk = new GRect(x,y,smallwidth,height);
-        }
-        if (size == 1){
-            disk = new GRect(x,y,medwidth,height);
-        }
-        if (size > 1){
-            disk = new GRect(x,y,bigwidth,height);
-        }
+        disk = new GRect(x,y,width,diskHeight);
 
         disk.setFillColor(color);
         disk.setFilled(true);
@@ -84,6 +116,28 @@ public class Disk {
         return size;
     }
 
+    /**
+     * Getter for the width of the disk.
+     * @return the width of the disk.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the X coordinate of the disk.
+     */
+    public int getX(){
+        return (int) Math.round(disk.getX());
+    }
+
+    /**
+     * @return the Y coordinate of the disk.
+     */
+    public int getY(){
+        return (int) Math.round(disk.getY());
+    }
+
     /**
      * Moves disk to specified location.
      * @param x the x coordinate of the wanted location.
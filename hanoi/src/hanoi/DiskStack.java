@@ -4,6 +4,7 @@ import acm.program.GraphicsProgram;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Stack;
 
 /**
@@ -21,10 +22,12 @@ public class DiskStack{
 
     private Disk pickedDisk; //The disk currently picked up, waiting to be placed
 
+    private int disks; //The number of disks in the game.
+
     private int width = Disk.bigwidth; //Width of the stack (as wide as the largest disk)
-    private int height = Disk.height*3; //Height of the stack (as tall as all three disks)
+    private int height; //Height of the stack (as tall as all the disks)
 
-    private int DY = Disk.height; //Change in height for each disk
+    private int DY; //Change in height for each disk
 
     /**
      * Constructor for DiskStack
@@ -37,57 +40,75 @@ public class DiskStack{
      * @param large true if the stack contains a big disk, otherwise false
      */
     public DiskStack(GraphicsProgram canvas, int x, int y, Color color, boolean small, boolean med, boolean large) {
+        this(canvas, x, y, color, new boolean[]{small, med, large});
+    }
+
+    /**
+     * Constructor for DiskStack that starts either full or empty.
+     * @param canvas The GraphicsProgram for the stack to be drawn on top of
+     * @param x X coordinate for the stack
+     * @param y Y coordinate for the stack
+     * @param color The color of the Disks in the stack
+     * @param disks the number of disks in the game
+     * @param full true if the stack starts with every disk, false if it starts empty
+     */
+    public DiskStack(GraphicsProgram canvas, int x, int y, Color color, int disks, boolean full) {
+        this(canvas, x, y, color, every(disks, full));
+    }
+
+    /**
+     * Constructor for DiskStack.
+     * @param canvas The GraphicsProgram for the stack to be drawn on top of
+     * @param x X coordinate for the stack
+     * @param y Y coordinate for the stack
+     * @param color The color of the Disks in the stack
+     * @param contains contains[size] is true if the stack contains the disk of that size
+     *                 (one entry for every disk in the game)
+     */
+    private DiskStack(GraphicsProgram canvas, int x, int y, Color color, boolean[] contains) {
         this.canvas = canvas;
         this.diskList = new ArrayList();
         this.diskStack = new Stack();
         this.X = x;
         this.Y = y;
-        CreateStack(color, x, y, small, med, large);
+        this.disks = contains.length;
+        this.DY = Disk.heightFor(disks);
+        this.height = DY*disks;
+        CreateStack(color, contains);
 
     }
 
     /**
-     * Creates the stack.
+     * Creates the stack, largest disk first.
      * @param color The color of the Disks in the stack
-     * @param x X coordinate for the stack
-     * @param y Y coordinate for the stack
-     * @param small true if the stack contains a small disk, otherwise false
-     * @param med true if the stack contains a med disk, otherwise false
-     * @param large true if the stack contains a big disk, otherwise false
+     * @param contains contains[size] is true if the stack contains the disk of that size
      */
-    private void CreateStack(Color color, int x, int y, boolean small, boolean med, boolean large) {
-
-        int currY = y - Disk.height;
-        int smallX = x + Disk.bigwidth/2 - Disk.smallwidth/2;
-        int medX = x + Disk.bigwidth/2 - Disk.medwidth/2;
-
-        if(large){
-            Disk bigDisk = new Disk(canvas, x, currY, 2, color);
-            diskStack.add(bigDisk);
-            diskList.add(bigDisk);
-            currY = currY - DY;
-
-        }
-        if(med){
-            Disk medDisk = new Disk(canvas, medX, currY, 1, color);
-            diskStack.add(medDisk);
-            diskList.add(medDisk);
-            currY = currY - DY;
-        }
-        if(small){
-            Disk smallDisk = new Disk(canvas, smallX, currY, 0, color);
-            diskStack.add(smallDisk);
-            diskList.add(smallDisk);
+    private void CreateStack(Color color, boolean[] contains) {
+        for(int size = contains.length - 1; size >= 0; size--){
+            if(contains[size]){
+                add(new Disk(canvas, X, Y, size, Disk.widthOf(size, disks), DY, color));
+            }
         }
     }
 
+    /**
+     * Makes a contains array with the same answer for every disk.
+     * @param disks the number of disks in the game
+     * @param contains true if the stack contains every disk, false if none
+     * @return the array
+     */
+    private static boolean[] every(int disks, boolean contains){
+        boolean[] every = new boolean[disks];
+        Arrays.fill(every, contains);
+        return every;
+    }
+
     /**
      * Removes the top Disk from the stack.
      * @return the Disk that was picked up.
      */
     public Disk pop(){
         this.pickedDisk = diskStack.pop();
-        pickedDisk.move(0,-30);
         diskList.remove(diskList.size() - 1);
         return pickedDisk;
     }
@@ -98,26 +119,54 @@ public class DiskStack{
      * @return true if add was successful, false if unsuccessful
      */
     public boolean add(Disk disk){
-        int y = Y - Disk.height*(diskList.size()+1);
-        int smallX = X + Disk.bigwidth/2 - Disk.smallwidth/2;
-        int medX = X + Disk.bigwidth/2 - Disk.medwidth/2;
+        disk.setLocation(slotX(disk), slotY());
 
+        disk.sendToFront();
+        return push(disk);
+    }
 
-        if(disk.isBig()) {
-            disk.setLocation(X, y);
-        }
+    /**
+     * Adds a Disk to the stack without moving it (e.g. while an Animator flies it there).
+     * @param disk the Disk to be added
+     * @return true if add was successful, false if unsuccessful
+     */
+    public boolean push(Disk disk){
+        diskList.add(disk);
+        return diskStack.add(disk);
+    }
 
-        if(disk.isMed()) {
-            disk.setLocation(medX, y);
-        }
+    /**
+     * Works out the X coordinate a Disk has on this stack.
+     * @param disk the Disk.
+     * @return the X coordinate (the Disk is centred on the peg).
+     */
+    public int slotX(Disk disk){
+        return X + Disk.bigwidth/2 - disk.getWidth()/2;
+    }
 
-        if(disk.isSmall()) {
-            disk.setLocation(smallX, y);
-        }
+    /**
+     * Works out the Y coordinate of the next Disk added to the stack.
+     * @return the Y coordinate.
+     */
+    public int slotY(){
+        return Y - DY*(diskList.size()+1);
+    }
 
-        disk.sendToFront();
-        diskList.add(disk);
-        return diskStack.add(disk);
+    /**
+     * Picks the top Disk up (moves it up without taking it off the stack).
+     * @return the Disk that was picked up.
+     */
+    public Disk lift(){
+        Disk disk = diskStack.peek();
+        disk.move(0,-Disk.height);
+        return disk;
+    }
+
+    /**
+     * Puts the top Disk back down after lift().
+     */
+    public void lower(){
+        diskStack.peek().move(0,Disk.height);
     }
 
     /**
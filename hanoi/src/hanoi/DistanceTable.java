@@ -0,0 +1,399 @@
+package hanoi;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * The distance from every state of a game to one goal state, kept in 2 bits per state outside
+ * the Java heap (a direct ByteBuffer), so even 4^15 states (about a billion) fit in 256 MB.
+ * States are numbered by StateIndex. Each entry holds the distance mod 3 (or UNREACHED), which is enough because the
+ * distances of two neighbouring states differ by at most one: of the neighbours of a state at
+ * distance d, the ones at d - 1 are exactly the ones whose entry is (d - 1) mod 3. So the best
+ * move from any state is found by looking at the entries of its neighbours. The exact distance
+ * of a state one move from a state whose distance is known comes from the two entries alone
+ * (distanceFrom), which is how a game asking after every move gets it; otherwise it's found
+ * once by following best moves to the goal (distance).
+ *
+ * The table is filled by a breadth first search from the goal, one level at a time: the states
+ * found at level d + 1 are the unreached neighbours of the states found at level d. The levels
+ * being searched are kept as one bit per state in another direct buffer (half the table's size,
+ * dropped once the table is built), and the entries tell the two levels apart: a set bit whose
+ * entry is d mod 3 is at level d, one whose entry is (d + 1) mod 3 was just found. So however big
+ * a level gets, the search takes no memory on the heap.
+ *
+ * The table for the win is kept in the game's SolverFile (see SolverCache.distanceTable), so it's
+ * only searched the first time and read in place from the mapped file after that.
+ */
+public class DistanceTable {
+
+    public static final int UNREACHED = 3; //The entry of a state the search hasn't found.
+    public static final long MAX_STATES = 1L << 30; //The most states a table is built for (4^15, 256 MB).
+    private static final Metrics.Histogram BUILD = Metrics.histogram("distance.build"); //Times building a table.
+
+    private ByteBuffer table; //4 entries per byte, the entry of state i in bits 2*(i%4) and up of byte i/4.
+    private int disks; //The number of disks.
+    private int pegs; //The number of pegs.
+    private long states; //The number of states.
+    private long goal; //The index of the goal state.
+    private long[] levelSizes; //levelSizes[d] is the number of states at distance d from the goal.
+
+    /**
+     * Checks if a game is small enough for a table.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return true if the game has at most MAX_STATES states.
+     */
+    public static boolean fits(int disks, int pegs){
+        long states = 1;
+        for(int d = 0; d < disks; d++){
+            states *= pegs;
+            if(states > MAX_STATES){
+                return false; //Stops before it could overflow.
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Constructor. Use build to make a table.
+     * @param goal the goal state.
+     */
+    private DistanceTable(GameState goal) {
+        this.disks = goal.getDisks();
+        this.pegs = goal.getPegs();
+        this.states = StateIndex.count(disks, pegs);
+        if(states > MAX_STATES){
+            throw new IllegalArgumentException("Too many states for a distance table: " + pegs + "^" + disks);
+        }
+        this.goal = StateIndex.toIndex(goal.getState(), disks, pegs);
+        this.table = ByteBuffer.allocateDirect((int) entryBytes(states));
+        byte[] unreached = new byte[8192];
+        Arrays.fill(unreached, (byte) 0xFF); //Every entry starts as UNREACHED.
+        while(table.hasRemaining()){
+            table.put(unreached, 0, Math.min(unreached.length, table.remaining()));
+        }
+        table.clear();
+    }
+
+    /**
+     * Constructor for a table to the win already worked out (e.g. mapped from a SolverFile).
+     * @param table the entries, as written from getEntries.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @param levelSizes the number of states at each distance.
+     */
+    DistanceTable(ByteBuffer table, int disks, int pegs, long[] levelSizes) {
+        this.disks = disks;
+        this.pegs = pegs;
+        this.states = StateIndex.count(disks, pegs);
+        if(table.capacity() != entryBytes(states)){
+            throw new IllegalArgumentException("Expected " + entryBytes(states) + " bytes of entries, got " + table.capacity());
+        }
+        this.goal = states - 1;
+        this.table = table;
+        this.levelSizes = levelSizes;
+    }
+
+    /**
+     * Works out the size of a table's entries.
+     * @param states the number of states.
+     * @return the number of bytes.
+     */
+    static long entryBytes(long states){
+        return (states + 3) / 4;
+    }
+
+    /**
+     * Builds the table for reaching the win (every disk on the last peg).
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the table.
+     */
+    public static DistanceTable build(int disks, int pegs){
+        long win = StateIndex.toPacked(StateIndex.count(disks, pegs) - 1, disks, pegs);
+        return build(new GameState(win, disks, pegs));
+    }
+
+    /**
+     * Builds the table for reaching any goal state.
+     * @param goal the goal state.
+     * @return the table.
+     */
+    public static DistanceTable build(GameState goal){
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        DistanceTable table = new DistanceTable(goal);
+        table.search();
+        if(Metrics.ENABLED){
+            BUILD.recordSince(start);
+        }
+        return table;
+    }
+
+    /**
+     * Gets the entry of a state: its distance to the goal mod 3.
+     * @param index the index of the state (by StateIndex).
+     * @return the distance mod 3, or UNREACHED if the goal can't be reached from the state.
+     */
+    public int codeAt(long index){
+        return (table.get((int) (index >>> 2)) >>> (2 * (int) (index & 3))) & 3;
+    }
+
+    /**
+     * Gets the distance of a state to the goal mod 3.
+     * @param state the state.
+     * @return the distance mod 3, or UNREACHED.
+     */
+    public int distanceMod3(GameState state){
+        return codeAt(indexOf(state));
+    }
+
+    /**
+     * Finds a move that takes a state one step closer to the goal, by looking at its neighbours.
+     * @param state the state.
+     * @return the move as an int array with the 'from' stack first and the 'to' stack second,
+     *         or null if the state is the goal.
+     */
+    public int[] bestMove(GameState state){
+        long index = indexOf(state);
+        int code = codeAt(index);
+        if(index == goal || code == UNREACHED){
+            return null;
+        }
+        int closer = (code + 2) % 3;
+        for(int from = 1; from <= pegs; from++){
+            for(int to = 1; to <= pegs; to++){
+                if(state.canMove(from, to)){
+                    GameState next = state.copy();
+                    next.moveDisk(from, to);
+                    if(codeAt(indexOf(next)) == closer){
+                        int[] move = new int[2];
+                        move[0] = from - 1;
+                        move[1] = to - 1;
+                        return move;
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("No neighbour is closer to the goal, the table is broken.");
+    }
+
+    /**
+     * Works out the exact distance of a state to the goal, by following best moves to the goal.
+     * Takes one step per move, so use distanceFrom, distanceMod3 or bestMove when they're enough.
+     * @param state the state.
+     * @return the fewest moves from the state to the goal, or -1 if the goal can't be reached.
+     */
+    public long distance(GameState state){
+        long index = indexOf(state);
+        if(codeAt(index) == UNREACHED){
+            return -1;
+        }
+        long distance = 0;
+        GameState current = state.copy();
+        while(index != goal){
+            index = stepCloser(current, codeAt(index));
+            distance++;
+        }
+        return distance;
+    }
+
+    /**
+     * Works out the exact distance of a state to the goal from the distance of a state it's at
+     * most one move from, with two lookups: the entries of neighbouring states say whether the
+     * move went closer, further or neither.
+     * @param state the state.
+     * @param near a state the same as state or one move from it.
+     * @param nearDistance the distance of near to the goal.
+     * @return the fewest moves from the state to the goal, or -1 if near isn't state or one move
+     *         from it (use distance then).
+     */
+    public long distanceFrom(GameState state, GameState near, long nearDistance){
+        long index = indexOf(state);
+        long nearIndex = indexOf(near);
+        if(index == nearIndex){
+            return nearDistance;
+        }
+        if(!isOneMove(near, state)){
+            return -1;
+        }
+        int code = codeAt(index);
+        int nearCode = codeAt(nearIndex);
+        if(code == (nearCode + 2) % 3){
+            return nearDistance - 1;
+        }
+        return code == nearCode ? nearDistance : nearDistance + 1;
+    }
+
+    /**
+     * Checks if one legal move takes a state to another.
+     * @param from the first state.
+     * @param to the other state.
+     * @return true if a move takes from to to.
+     */
+    private boolean isOneMove(GameState from, GameState to){
+        long differ = from.getState() ^ to.getState();
+        int bits = GameState.bitsPerDisk(pegs);
+        int disk = Long.numberOfTrailingZeros(differ) / bits;
+        if(differ == 0 || differ >>> (bits * disk) >>> bits != 0){ //Exactly one disk has to be on another peg.
+            return false;
+        }
+        GameState moved = from.copy();
+        moved.moveDisk(from.pegOf(disk) + 1, to.pegOf(disk) + 1);
+        return moved.equals(to);
+    }
+
+    /**
+     * Makes a move that takes a state one step closer to the goal, on the state itself.
+     * @param state the state (not the goal).
+     * @param code the entry of the state.
+     * @return the index of the state after the move.
+     */
+    private long stepCloser(GameState state, int code){
+        int closer = (code + 2) % 3;
+        for(int from = 1; from <= pegs; from++){
+            for(int to = 1; to <= pegs; to++){
+                if(state.canMove(from, to)){
+                    state.moveDisk(from, to);
+                    long index = StateIndex.toIndex(state.getState(), disks, pegs);
+                    if(codeAt(index) == closer){
+                        return index;
+                    }
+                    state.moveDisk(to, from); //Tried on the state itself, so the walk allocates nothing.
+                }
+            }
+        }
+        throw new IllegalStateException("No neighbour is closer to the goal, the table is broken.");
+    }
+
+    /**
+     * @return the largest distance of any state from the goal.
+     */
+    public int getDepth(){
+        return levelSizes.length - 1;
+    }
+
+    /**
+     * Gets how many states are at a distance from the goal (e.g. to pick a puzzle of some difficulty).
+     * @param distance the distance.
+     * @return the number of states, 0 if the distance is more than getDepth().
+     */
+    public long getLevelSize(int distance){
+        return distance < levelSizes.length ? levelSizes[distance] : 0;
+    }
+
+    /**
+     * Gets the entries, to be written to a file.
+     * @return a read-only view of every entry, 4 to a byte.
+     */
+    ByteBuffer getEntries(){
+        ByteBuffer entries = table.duplicate();
+        entries.clear();
+        return entries.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the number of bytes the table takes (outside the heap).
+     */
+    public long memoryUsed(){
+        return table.capacity();
+    }
+
+    /**
+     * Getter for disks.
+     * @return disks
+     */
+    public int getDisks() {
+        return disks;
+    }
+
+    /**
+     * Getter for pegs.
+     * @return pegs
+     */
+    public int getPegs() {
+        return pegs;
+    }
+
+    /**
+     * Fills the table, one level at a time.
+     */
+    private void search(){
+        long[] sizes = new long[64];
+        LongBuffer frontier = ByteBuffer.allocateDirect((int) ((states + 63) >>> 6) * 8).asLongBuffer(); //Bit i set if state i is at the current or next level (zeroed when allocated).
+        long[] next = new long[pegs * (pegs - 1)];
+        int[] top = new int[pegs]; //Scratch for neighbors, so the loop allocates nothing.
+        long[] power = new long[pegs];
+        set(goal, 0);
+        frontier.put((int) (goal >>> 6), 1L << goal);
+        int low = (int) (goal >>> 6); //The first word of frontier with a bit set.
+        int high = low; //The last word with a bit set.
+        long levelSize = 1;
+        int distance = 0;
+
+        while(levelSize > 0){
+            if(distance == sizes.length){
+                sizes = Arrays.copyOf(sizes, sizes.length * 2);
+            }
+            sizes[distance] = levelSize;
+            int code = distance % 3;
+            int nextCode = (distance + 1) % 3;
+            long foundSize = 0;
+            int nextLow = Integer.MAX_VALUE;
+            int nextHigh = -1;
+            for(int word = low; word <= high; word++){
+                long bits = frontier.get(word);
+                while(bits != 0){
+                    long bit = Long.lowestOneBit(bits);
+                    bits ^= bit;
+                    long index = ((long) word << 6) + Long.numberOfTrailingZeros(bit);
+                    if(codeAt(index) != code){
+                        continue; //Found at this level, so it's expanded at the next.
+                    }
+                    frontier.put(word, frontier.get(word) & ~bit);
+                    int count = StateIndex.neighbors(index, disks, pegs, next, top, power);
+                    for(int k = 0; k < count; k++){
+                        if(codeAt(next[k]) == UNREACHED){
+                            set(next[k], nextCode);
+                            int at = (int) (next[k] >>> 6);
+                            frontier.put(at, frontier.get(at) | 1L << next[k]);
+                            nextLow = Math.min(nextLow, at);
+                            nextHigh = Math.max(nextHigh, at);
+                            foundSize++;
+                        }
+                    }
+                }
+            }
+            low = nextLow;
+            high = nextHigh;
+            levelSize = foundSize;
+            distance++;
+        }
+        levelSizes = Arrays.copyOf(sizes, distance);
+    }
+
+    /**
+     * Sets the entry of a state.
+     * @param index the index of the state.
+     * @param code the entry (0 to 3).
+     */
+    private void set(long index, int code){
+        int at = (int) (index >>> 2);
+        int shift = 2 * (int) (index & 3);
+        int bits = table.get(at) & ~(3 << shift) | code << shift;
+        table.put(at, (byte) bits);
+    }
+
+    /**
+     * Finds the index of a state, checking that it belongs to this table's game.
+     * @param state the state.
+     * @return the index of the state.
+     */
+    private long indexOf(GameState state){
+        if(state.getDisks() != disks || state.getPegs() != pegs){
+            throw new IllegalArgumentException("Expected " + disks + " disks on " + pegs + " pegs, got "
+                    + state.getDisks() + " on " + state.getPegs());
+        }
+        return StateIndex.toIndex(state.getState(), disks, pegs);
+    }
+}
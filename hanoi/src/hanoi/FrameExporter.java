@@ -0,0 +1,274 @@
+package hanoi;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders a demo run to PNG images, one frame per board state, with no window (to make a video of
+ * a long solution). The board of every frame is worked out straight from its move number with
+ * MoveSource.stateAt, so frames don't depend on each other and are drawn and encoded in parallel,
+ * each thread reusing its own BoardView and image. The frames are written in order as they're
+ * done, and only a few frames per thread are ever waiting to be written, so memory stays the same
+ * however long the run is.
+ *
+ * Run with: out disks pegs [step threads] (e.g. frames 10 3, or - 20 3 1024 8 | ffmpeg -f image2pipe -i - demo.mp4).
+ * Every step-th state is drawn (and always the last). With out as "-" the PNGs are written one
+ * after another to standard output, otherwise to out/frame-000000.png and up.
+ */
+public class FrameExporter {
+
+    public static final int WIDTH = 800; //The narrowest frame (the same as the game's canvas).
+    public static final int HEIGHT = 300; //The height of a frame (the same as one board in the game).
+    private static final int WINDOW = 4; //The most frames per thread drawn but not yet written.
+    private static final Color[] COLORS = {Color.white, Color.black, Color.pink, Color.gray}; //Every color a frame has.
+
+    private MoveSource moves; //The moves of the demo.
+    private long step; //The number of moves between frames.
+    private int threads; //The number of threads drawing frames.
+    private int width; //The width of a frame.
+    private ThreadLocal<Renderer> renderers; //Every thread's own board, view and image.
+
+    /**
+     * Constructor
+     * @param moves the moves of the demo (e.g. from AIPlayer.solve). Its stateAt is called from every
+     *              thread at once, as OptimalMoves and FrameStewartSolver allow.
+     * @param step the number of moves between frames (1 for every state).
+     * @param threads the number of threads drawing frames.
+     */
+    public FrameExporter(MoveSource moves, long step, int threads) {
+        if(step < 1){
+            throw new IllegalArgumentException("The step must be at least 1: " + step);
+        }
+        if(moves.getDisks() > GameState.maxDisks(moves.getPegs())){
+            throw new IllegalArgumentException("Frames can only be drawn for up to " + GameState.maxDisks(moves.getPegs())
+                    + " disks on " + moves.getPegs() + " pegs.");
+        }
+        this.moves = moves;
+        this.step = step;
+        this.threads = Math.max(1, threads);
+        this.width = Math.max(WIDTH, HanoiBoard.widthFor(moves.getPegs()));
+        this.renderers = new ThreadLocal<Renderer>() {
+            @Override
+            protected Renderer initialValue() {
+                return new Renderer();
+            }
+        };
+    }
+
+    /**
+     * @return the number of frames: the starting state, every step-th state and the win.
+     */
+    public long getFrameCount(){
+        return (moves.size() + step - 1) / step + 1;
+    }
+
+    /**
+     * Gets the number of moves done in a frame.
+     * @param frame the frame.
+     * @return the move number (the last frame is always the win).
+     */
+    public long moveOf(long frame){
+        return Math.min(frame * step, moves.size());
+    }
+
+    /**
+     * Writes every frame to a directory, as frame-000000.png and up.
+     * @param dir the directory (made if it doesn't exist).
+     * @throws IOException if a frame couldn't be written.
+     */
+    public void export(File dir) throws IOException, InterruptedException {
+        if(!dir.isDirectory() && !dir.mkdirs()){
+            throw new IOException("Couldn't make " + dir);
+        }
+        export(dir, null);
+    }
+
+    /**
+     * Writes every frame to a stream, one PNG after another (e.g. for ffmpeg -f image2pipe).
+     * @param out the stream. It's flushed but not closed.
+     * @throws IOException if a frame couldn't be written.
+     */
+    public void export(OutputStream out) throws IOException, InterruptedException {
+        export(null, out);
+        out.flush();
+    }
+
+    /**
+     * Draws the frames on the threads and writes them in order, to files or to a stream. The
+     * next frame is handed to a thread as soon as one is written, so at most WINDOW frames per
+     * thread are held at once.
+     * @param dir the directory to write files to (if out is null).
+     * @param out the stream to write to, or null.
+     * @throws IOException if a frame couldn't be written.
+     */
+    private void export(File dir, OutputStream out) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try{
+            long frames = getFrameCount();
+            int window = (int) Math.min(frames, (long) threads * WINDOW);
+            ArrayList<Future<byte[]>> pending = new ArrayList<>(window); //pending[f % window] is frame f.
+            for(int f = 0; f < window; f++){
+                pending.add(submit(executor, f));
+            }
+            for(long f = 0; f < frames; f++){
+                int slot = (int) (f % window);
+                byte[] png = pending.get(slot).get();
+                if(f + window < frames){
+                    pending.set(slot, submit(executor, f + window));
+                }
+                if(out != null){
+                    out.write(png);
+                }
+                else{
+                    write(new File(dir, String.format("frame-%06d.png", f)), png);
+                }
+            }
+        }
+        catch(ExecutionException e){
+            if(e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally{
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Hands a frame to a thread to draw.
+     * @param executor the threads.
+     * @param frame the frame.
+     * @return the frame as a PNG, once it's drawn.
+     */
+    private Future<byte[]> submit(ExecutorService executor, final long frame){
+        return executor.submit(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                return renderers.get().render(frame);
+            }
+        });
+    }
+
+    /**
+     * Makes the palette of the frames. A frame only has a few colors, so it's drawn with 2 bits a
+     * pixel, which makes the PNG about 3 times faster to encode than a full color image.
+     * @return the palette.
+     */
+    private static IndexColorModel palette(){
+        byte[] r = new byte[COLORS.length];
+        byte[] g = new byte[COLORS.length];
+        byte[] b = new byte[COLORS.length];
+        for(int i = 0; i < COLORS.length; i++){
+            r[i] = (byte) COLORS[i].getRed();
+            g[i] = (byte) COLORS[i].getGreen();
+            b[i] = (byte) COLORS[i].getBlue();
+        }
+        return new IndexColorModel(2, COLORS.length, r, g, b);
+    }
+
+    /**
+     * Writes a file.
+     * @param file the file.
+     * @param bytes what to write in it.
+     * @throws IOException if it couldn't be written.
+     */
+    private static void write(File file, byte[] bytes) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try{
+            out.write(bytes);
+        }
+        finally{
+            out.close();
+        }
+    }
+
+    /**
+     * One thread's board, view and image, reused for every frame the thread draws.
+     */
+    private class Renderer {
+
+        private BoardModel board = new BoardModel(moves.getDisks(), moves.getPegs()); //The board of the frame.
+        private BoardView view = new BoardView(null, board, 100, 200, 230, Color.pink); //Laid out like a HanoiBoard.
+        private BufferedImage image = new BufferedImage(width, HEIGHT, BufferedImage.TYPE_BYTE_BINARY, palette()); //The frame, 2 bits a pixel.
+        private ByteArrayOutputStream png = new ByteArrayOutputStream(); //The frame encoded.
+
+        /**
+         * Draws a frame and encodes it.
+         * @param frame the frame.
+         * @return the frame as a PNG.
+         * @throws IOException if it couldn't be encoded.
+         */
+        private byte[] render(long frame) throws IOException {
+            long k = moveOf(frame);
+            board.setState(moves.stateAt(k));
+
+            Graphics2D g = image.createGraphics();
+            try{
+                g.setColor(Color.white);
+                g.fillRect(0, 0, width, HEIGHT);
+                view.paint(g);
+                g.setColor(Color.black);
+                g.drawString("Move " + k + " of " + moves.size(), width/2 - 60, 40);
+            }
+            finally{
+                g.dispose();
+            }
+
+            png.reset();
+            ImageOutputStream stream = new MemoryCacheImageOutputStream(png); //ImageIO.write(image, "png", png) would cache in a temporary file.
+            try{
+                ImageIO.write(image, "png", stream);
+            }
+            finally{
+                stream.close();
+            }
+            return png.toByteArray();
+        }
+    }
+
+    /**
+     * Exports a demo run and prints how fast it went.
+     * @param args out disks pegs [step threads]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        String out = args.length > 0 ? args[0] : "frames";
+        int disks = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int pegs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        long step = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        FrameExporter exporter = new FrameExporter(AIPlayer.solve(disks, pegs), step, threads);
+        long start = System.nanoTime();
+        if(out.equals("-")){
+            OutputStream stdout = new BufferedOutputStream(System.out, 1 << 16);
+            exporter.export(stdout);
+        }
+        else{
+            exporter.export(new File(out));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.err.printf("%d frames of %d disks on %d pegs on %d threads in %.3f s (%.0f frames/s)%n",
+                exporter.getFrameCount(), disks, pegs, threads, seconds, exporter.getFrameCount() / seconds);
+    }
+}
@@ -0,0 +1,377 @@
+package hanoi;
+
+/**
+ * The Frame-Stewart solution for moving every disk from the first peg to the last one with any
+ * number of pegs (3 or more). To move n disks with p pegs: move the top s disks onto a spare peg
+ * using all p pegs, move the other n - s disks to the last peg using the p - 1 pegs left, then
+ * move the s disks onto them using all p pegs again. s is picked to make the total as small as
+ * possible:
+ *   FS(n, p) = min over s of 2 * FS(s, p) + FS(n - s, p - 1)
+ * The lengths and best splits for every smaller game are kept in a table worked out once by the
+ * constructor, so a move or a board state is found by walking down the split table (a few steps
+ * per disk) instead of by playing through the moves before it. Moves are never stored.
+ *
+ * With three pegs there's only one split (s = n - 1) and this is the usual 2^n - 1 solution,
+ * though OptimalMoves works that out faster.
+ *
+ * moveAt, diskAt and stateAt keep nothing between calls, so any number of threads can call them
+ * at once (e.g. FrameExporter drawing frames in parallel). Only the cursor used by next isn't shared,
+ * and cursor() makes another one over the same tables without working them out again.
+ */
+public class FrameStewartSolver implements MoveSource {
+
+    public static final int MAX_DISKS = 64; //The most disks a solution can move (only states are limited by GameState).
+
+    private int disks; //The number of disks being moved.
+    private int pegs; //The number of pegs in the game.
+    private long[][] length; //length[n][p] is the number of moves to move n disks with p pegs, or Long.MAX_VALUE if that's too many to count.
+    private int[][] split; //split[n][p] is how many of the n disks are moved out of the way first.
+    private long next; //The index of the next move handed out by next().
+
+    /**
+     * Constructor
+     * @param disks the number of disks to be moved.
+     * @param pegs the number of pegs in the game.
+     */
+    public FrameStewartSolver(int disks, int pegs) {
+        if(disks < 1 || disks > MAX_DISKS){
+            throw new IllegalArgumentException("Disks must be between 1 and " + MAX_DISKS + ": " + disks);
+        }
+        if(pegs < 3 || pegs > GameState.MAX_PEGS){
+            throw new IllegalArgumentException("Pegs must be between 3 and " + GameState.MAX_PEGS + ": " + pegs);
+        }
+        this.disks = disks;
+        this.pegs = pegs;
+        fillTables();
+        if(length[disks][pegs] == Long.MAX_VALUE){
+            throw new IllegalArgumentException("Too many moves to count for " + disks + " disks on " + pegs + " pegs.");
+        }
+    }
+
+    /**
+     * Constructor for another cursor over a solver's tables (see cursor).
+     * @param other the solver whose tables are shared.
+     */
+    private FrameStewartSolver(FrameStewartSolver other) {
+        this.disks = other.disks;
+        this.pegs = other.pegs;
+        this.length = other.length; //Never changed once filled, so they can be shared.
+        this.split = other.split;
+    }
+
+    /**
+     * Works out the number of moves of a Frame-Stewart solution, without making a solver.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the number of moves.
+     */
+    public static long length(int disks, int pegs){
+        return new FrameStewartSolver(disks, pegs).size();
+    }
+
+    /**
+     * Works out a move of the solution.
+     * @param k the index of the move (0 is the first move).
+     * @return the move as an int array with the 'from' stack first and the 'to' stack second.
+     */
+    public int[] moveAt(long k){
+        checkIndex(k, size() - 1);
+        int n = disks;
+        int[] order = startOrder();
+        int p = pegs;
+        while(n > 1){
+            int s = split[n][p];
+            long before = length[s][p]; //Moves spent getting the top s disks out of the way.
+            long middle = length[n - s][p - 1]; //Moves spent moving the rest.
+            if(k < before){
+                n = s;
+                parkTop(order, p);
+            }
+            else if(k < before + middle){
+                k -= before;
+                n = n - s;
+                p = dropPark(order, p);
+            }
+            else{
+                k -= before + middle;
+                n = s;
+                unparkTop(order);
+            }
+        }
+        int[] fromTo = new int[2];
+        fromTo[0] = order[0];
+        fromTo[1] = order[p - 1];
+        return fromTo;
+    }
+
+    /**
+     * Works out which disk a move of the solution picks up.
+     * @param k the index of the move (0 is the first move).
+     * @return the disk moved (0 is the smallest).
+     */
+    public int diskAt(long k){
+        checkIndex(k, size() - 1);
+        int n = disks;
+        int lowest = 0; //The smallest disk of the game being walked.
+        int p = pegs;
+        while(n > 1){
+            int s = split[n][p];
+            long before = length[s][p];
+            long middle = length[n - s][p - 1];
+            if(k < before){
+                n = s;
+            }
+            else if(k < before + middle){
+                k -= before;
+                lowest += s;
+                n = n - s;
+                p--;
+            }
+            else{
+                k -= before + middle;
+                n = s;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * Works out the state of the board after some number of moves of the solution without
+     * playing through them, by deciding where each group of disks is from the largest down.
+     * @param k the number of moves already done (0 is the starting state, size() is the win).
+     * @return the state of the board after k moves.
+     */
+    public GameState stateAt(long k){
+        checkIndex(k, size());
+        if(disks > GameState.maxDisks(pegs)){
+            throw new IllegalArgumentException("A GameState can't hold " + disks + " disks on " + pegs + " pegs.");
+        }
+        int bits = GameState.bitsPerDisk(pegs);
+        long state = 0;
+        int n = disks;
+        int lowest = 0;
+        int[] order = startOrder();
+        int p = pegs;
+        while(n > 0){
+            if(n == 1){
+                state |= (long) (k == 0 ? order[0] : order[p - 1]) << (bits * lowest);
+                break;
+            }
+            int s = split[n][p];
+            long before = length[s][p];
+            long middle = length[n - s][p - 1];
+            if(k < before){ //The bottom n - s disks haven't moved yet.
+                state |= place(order[0], lowest + s, n - s, bits);
+                n = s;
+                parkTop(order, p);
+            }
+            else if(k < before + middle){ //The top s disks are parked, the rest are moving.
+                state |= place(order[1], lowest, s, bits);
+                k -= before;
+                lowest += s;
+                n = n - s;
+                p = dropPark(order, p);
+            }
+            else{ //The bottom n - s disks are done, the top s disks are coming back on top.
+                state |= place(order[p - 1], lowest + s, n - s, bits);
+                k -= before + middle;
+                n = s;
+                unparkTop(order);
+            }
+        }
+        return new GameState(state, disks, pegs);
+    }
+
+    /**
+     * Gets the next move and moves the cursor past it.
+     * @return the next move.
+     */
+    public int[] next(){
+        int[] move = moveAt(next);
+        next++;
+        return move;
+    }
+
+    /**
+     * @return true if there are moves left after the cursor, false if not.
+     */
+    public boolean hasNext(){
+        return next < size();
+    }
+
+    /**
+     * Moves the cursor so that the next move handed out is move k.
+     * @param k the index of the next move (size() means there are no moves left).
+     */
+    public void seek(long k){
+        checkIndex(k, size());
+        next = k;
+    }
+
+    /**
+     * Getter for the cursor.
+     * @return the index of the next move to be handed out.
+     */
+    public long position() {
+        return next;
+    }
+
+    /**
+     * @return the number of moves in the solution.
+     */
+    public long size() {
+        return length[disks][pegs];
+    }
+
+    /**
+     * @return another cursor over the same tables, at move 0.
+     */
+    public MoveSource cursor(){
+        return new FrameStewartSolver(this);
+    }
+
+    /**
+     * Getter for disks.
+     * @return disks
+     */
+    public int getDisks() {
+        return disks;
+    }
+
+    /**
+     * Getter for pegs.
+     * @return pegs
+     */
+    public int getPegs() {
+        return pegs;
+    }
+
+    /**
+     * Gets the best split for a smaller game.
+     * @param n the number of disks (2 or more).
+     * @param p the number of pegs (3 to getPegs()).
+     * @return how many of the top disks are moved out of the way first.
+     */
+    public int getSplit(int n, int p){
+        return split[n][p];
+    }
+
+    /**
+     * Fills length and split for every game up to this one's size. Two pegs can only move one
+     * disk, which leaves three pegs with the single split n - 1.
+     */
+    private void fillTables(){
+        length = new long[disks + 1][pegs + 1];
+        split = new int[disks + 1][pegs + 1];
+        for(int n = 1; n <= disks; n++){
+            length[n][2] = n == 1 ? 1 : Long.MAX_VALUE;
+        }
+        for(int p = 3; p <= pegs; p++){
+            length[1][p] = 1;
+            for(int n = 2; n <= disks; n++){
+                long best = Long.MAX_VALUE;
+                int bestSplit = n - 1;
+                for(int s = 1; s < n; s++){
+                    long moves = add(add(length[s][p], length[s][p]), length[n - s][p - 1]);
+                    if(moves < best){
+                        best = moves;
+                        bestSplit = s;
+                    }
+                }
+                length[n][p] = best;
+                split[n][p] = bestSplit;
+            }
+        }
+    }
+
+    /**
+     * Adds two move counts, sticking at Long.MAX_VALUE instead of overflowing.
+     * @param a a move count.
+     * @param b a move count.
+     * @return a + b, or Long.MAX_VALUE if that's too big.
+     */
+    private static long add(long a, long b){
+        long sum = a + b;
+        return sum < 0 || a == Long.MAX_VALUE || b == Long.MAX_VALUE ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Makes the order of the pegs for walking the whole game. Each walk has its own, so walks on
+     * different threads don't get in each other's way.
+     * @return the pegs of the game being walked, 'from' first and 'to' last.
+     */
+    private int[] startOrder(){
+        int[] order = new int[pegs];
+        for(int i = 0; i < pegs; i++){
+            order[i] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Walks into moving the top disks out of the way: from the 'from' peg to the first spare.
+     * @param order the pegs being walked.
+     * @param p the number of pegs being walked.
+     */
+    private static void parkTop(int[] order, int p){
+        swap(order, 1, p - 1);
+    }
+
+    /**
+     * Walks into moving the top disks back: from the first spare to the 'to' peg.
+     * @param order the pegs being walked.
+     */
+    private static void unparkTop(int[] order){
+        swap(order, 0, 1);
+    }
+
+    /**
+     * Walks into moving the bottom disks, which can't use the peg the top disks are parked on.
+     * @param order the pegs being walked.
+     * @param p the number of pegs being walked.
+     * @return the number of pegs left.
+     */
+    private static int dropPark(int[] order, int p){
+        System.arraycopy(order, 2, order, 1, p - 2);
+        return p - 1;
+    }
+
+    /**
+     * Swaps two pegs in the order.
+     * @param order the pegs being walked.
+     * @param i a place in the order.
+     * @param j another place in the order.
+     */
+    private static void swap(int[] order, int i, int j){
+        int temp = order[i];
+        order[i] = order[j];
+        order[j] = temp;
+    }
+
+    /**
+     * Packs a group of disks that are all on the same peg.
+     * @param peg the peg.
+     * @param first the smallest disk of the group.
+     * @param count the number of disks in the group.
+     * @param bits the width of every disk's slot.
+     * @return the slots of the group.
+     */
+    private static long place(int peg, int first, int count, int bits){
+        long packed = 0;
+        for(int disk = first; disk < first + count; disk++){
+            packed |= (long) peg << (bits * disk);
+        }
+        return packed;
+    }
+
+    /**
+     * Makes sure an index is inside the solution.
+     * @param k the index.
+     * @param max the largest allowed index.
+     */
+    private void checkIndex(long k, long max){
+        if(k < 0 || k > max){
+            throw new IndexOutOfBoundsException("Index " + k + " is outside 0.." + max);
+        }
+    }
+}
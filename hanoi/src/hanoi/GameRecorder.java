@@ -0,0 +1,268 @@
+package hanoi;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records every move made on one or two boards (e.g. the user's and the AI's in versus mode) to a
+ * file, so the game can be replayed with GameReplay. Listens to the boards' models, so it sees
+ * every move whoever makes it.
+ *
+ * The file starts with a header: MAGIC, VERSION, the number of disks, pegs and boards (a byte
+ * each), the wall clock time the recording started (milliseconds since 1970, a long) and
+ * CHECKPOINT (an int). Then come the records, only ever added to the end:
+ * - A move: the move packed in a byte (see MoveRing, pegs from 0), then a varint holding the
+ *   milliseconds since the last record shifted up one bit, with the board in the low bit. Most
+ *   moves take 2 or 3 bytes.
+ * - A reset (the whole board changed at once): the byte RESET, the same varint, then the board's
+ *   state as a long (see GameState.getState).
+ * - A checkpoint, after every CHECKPOINT moves (and at the start): the byte CHECKPOINT_TAG, the
+ *   number of moves recorded so far (a long), then the state of every board (a long each).
+ * The tags can't be moves since they move a disk onto the peg it's on. Varints are 7 bits a byte,
+ * lowest first, with the top bit set on every byte but the last.
+ *
+ * Records are collected in memory and written out in batches, when BATCH bytes are waiting or
+ * FLUSH_MILLIS have gone by since the last write, and when the recorder is closed (or the program
+ * exits). Like the boards it listens to, a recorder is used on the event thread.
+ */
+public class GameRecorder {
+
+    public static final int MAGIC = 0x48524543; //"HREC", the first 4 bytes of every recording.
+    public static final byte VERSION = 1; //The version of the format.
+    public static final int HEADER = 20; //The size of the header in bytes.
+    public static final int CHECKPOINT = 1024; //The number of moves between checkpoints.
+    public static final int CHECKPOINT_TAG = 0x00; //The first byte of a checkpoint (a move from peg 0 to peg 0).
+    public static final int RESET = 0x11; //The first byte of a reset (a move from peg 1 to peg 1).
+    public static final int MAX_BOARDS = 2; //The most boards one recording holds (one bit in each record).
+
+    private static final int BATCH = 1 << 12; //Records are written once this many bytes are waiting.
+    private static final int FLUSH_MILLIS = 1000; //Or once this long has gone by since the last write.
+
+    private FileOutputStream out; //The file (null once closed).
+    private BoardModel[] boards; //The boards being recorded.
+    private byte[] batch = new byte[BATCH + 64]; //Records not written yet (with room for one more record past BATCH).
+    private int size; //The number of bytes in batch.
+    private long moves; //The number of moves recorded.
+    private long last; //When the last record was made (milliseconds from System.nanoTime()).
+    private long flushed; //When batch was last written (milliseconds from System.nanoTime()).
+    private IOException error; //The first error writing the file, after which nothing more is recorded.
+    private Thread closer; //Writes what's left when the program exits.
+
+    /**
+     * Constructor. Starts recording straight away, from the boards as they are now.
+     * @param file the file to record to (anything already in it is replaced).
+     * @param boards the boards to record, all with the same number of disks and pegs.
+     * @throws IOException if the file couldn't be made.
+     */
+    public GameRecorder(File file, BoardModel... boards) throws IOException {
+        if(boards.length < 1 || boards.length > MAX_BOARDS){
+            throw new IllegalArgumentException("Can record 1 to " + MAX_BOARDS + " boards: " + boards.length);
+        }
+        int disks = boards[0].getDisks();
+        int pegs = boards[0].getPegs();
+        for(BoardModel board : boards){
+            if(board.getDisks() != disks || board.getPegs() != pegs){
+                throw new IllegalArgumentException("Every board needs " + disks + " disks on " + pegs + " pegs.");
+            }
+        }
+        if(disks > GameState.maxDisks(pegs)){
+            throw new IllegalArgumentException("Can only record up to " + GameState.maxDisks(pegs) + " disks on " + pegs + " pegs: " + disks);
+        }
+        this.boards = boards.clone();
+        this.out = new FileOutputStream(file);
+
+        writeInt(MAGIC);
+        batch[size++] = VERSION;
+        batch[size++] = (byte) disks;
+        batch[size++] = (byte) pegs;
+        batch[size++] = (byte) boards.length;
+        writeLong(System.currentTimeMillis());
+        writeInt(CHECKPOINT);
+        last = flushed = System.nanoTime() / 1000000;
+        checkpoint();
+
+        for(int i = 0; i < boards.length; i++){
+            final int board = i;
+            boards[i].addListener(new BoardListener() {
+                public void diskMoved(int from, int to, int disk) {
+                    moved(board, from, to);
+                }
+                public void boardReset() {
+                    reset(board);
+                }
+            });
+        }
+        closer = new Thread(new Runnable() {
+            public void run() {
+                close();
+            }
+        }, "GameRecorder close");
+        Runtime.getRuntime().addShutdownHook(closer);
+    }
+
+    /**
+     * Records a move.
+     * @param board which board it was made on.
+     * @param from the peg the disk came from.
+     * @param to the peg the disk went to.
+     */
+    private synchronized void moved(int board, int from, int to){
+        if(out == null){
+            return;
+        }
+        batch[size++] = MoveRing.pack(from, to);
+        writeVarint(elapsed() << 1 | board);
+        moves++;
+        if(moves % CHECKPOINT == 0){
+            checkpoint();
+        }
+        flushIfDue();
+    }
+
+    /**
+     * Records a board changing all at once.
+     * @param board which board.
+     */
+    private synchronized void reset(int board){
+        if(out == null){
+            return;
+        }
+        batch[size++] = RESET;
+        writeVarint(elapsed() << 1 | board);
+        writeLong(boards[board].toGameState().getState());
+        flushIfDue();
+    }
+
+    /**
+     * Records where every board is now.
+     */
+    private void checkpoint(){
+        batch[size++] = CHECKPOINT_TAG;
+        writeLong(moves);
+        for(BoardModel board : boards){
+            writeLong(board.toGameState().getState());
+        }
+    }
+
+    /**
+     * Works out the time since the last record.
+     * @return the milliseconds since the last record.
+     */
+    private long elapsed(){
+        long now = System.nanoTime() / 1000000;
+        long millis = Math.max(0, now - last);
+        last = now;
+        return millis;
+    }
+
+    /**
+     * Writes the batch out if it's big enough or old enough.
+     */
+    private void flushIfDue(){
+        if(size >= BATCH || last - flushed >= FLUSH_MILLIS){
+            flush();
+        }
+    }
+
+    /**
+     * Writes out every record made so far.
+     */
+    public synchronized void flush(){
+        if(out == null || size == 0){
+            return;
+        }
+        try{
+            out.write(batch, 0, size);
+        }
+        catch(IOException e){
+            error = e;
+            closeFile();
+        }
+        size = 0;
+        flushed = System.nanoTime() / 1000000;
+    }
+
+    /**
+     * Writes out every record made so far and stops recording.
+     */
+    public synchronized void close(){
+        flush();
+        closeFile();
+        if(closer != null && Thread.currentThread() != closer){
+            try{
+                Runtime.getRuntime().removeShutdownHook(closer);
+            }
+            catch(IllegalStateException e){
+                //The program is already exiting.
+            }
+        }
+        closer = null;
+    }
+
+    /**
+     * Closes the file, keeping the first error.
+     */
+    private void closeFile(){
+        if(out == null){
+            return;
+        }
+        try{
+            out.close();
+        }
+        catch(IOException e){
+            if(error == null){
+                error = e;
+            }
+        }
+        out = null;
+    }
+
+    /**
+     * Getter for moves.
+     * @return the number of moves recorded so far.
+     */
+    public synchronized long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Getter for error.
+     * @return the error that stopped the recording, or null if there wasn't one.
+     */
+    public synchronized IOException getError() {
+        return error;
+    }
+
+    /**
+     * Adds a number to the batch, 7 bits a byte.
+     * @param value the number (not negative).
+     */
+    private void writeVarint(long value){
+        while(value >= 0x80){
+            batch[size++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        batch[size++] = (byte) value;
+    }
+
+    /**
+     * Adds an int to the batch, high byte first.
+     * @param value the int.
+     */
+    private void writeInt(int value){
+        for(int shift = 24; shift >= 0; shift -= 8){
+            batch[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Adds a long to the batch, high byte first.
+     * @param value the long.
+     */
+    private void writeLong(long value){
+        for(int shift = 56; shift >= 0; shift -= 8){
+            batch[size++] = (byte) (value >>> shift);
+        }
+    }
+}
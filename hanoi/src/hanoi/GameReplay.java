@@ -0,0 +1,518 @@
+package hanoi;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Plays back a recording made by GameRecorder, one move at a time, onto BoardModels (and so onto
+ * any HanoiBoard drawing them). The file is read in small blocks as the moves are played, so a
+ * recording of any length can be replayed. The time each move was made is kept, so the caller
+ * can play it back at any speed: nextDelay says how long to wait before the next move.
+ *
+ * When a recording is opened it's read through once (without playing anything) to find its
+ * checkpoints, which the recorder writes every GameRecorder.CHECKPOINT moves. seek then jumps to
+ * any move by starting from the last checkpoint before it and playing the moves after it on
+ * GameStates, so the boards change only once. A recording cut off part way through a record (e.g.
+ * the program was killed) plays up to the last whole record.
+ */
+public class GameReplay {
+
+    private static final int BLOCK = 1 << 16; //The number of bytes read from the file at once.
+
+    private RandomAccessFile input; //The recording.
+    private FileChannel channel; //The recording, read at absolute positions.
+    private ByteBuffer buffer = ByteBuffer.allocate(BLOCK); //The bytes read from the file but not used yet.
+    private long bufferAt; //Where in the file the start of buffer came from.
+    private long end; //Where the last whole record ends.
+
+    private int disks; //The number of disks in the game.
+    private int pegs; //The number of pegs in the game.
+    private long startTime; //When the recording started (milliseconds since 1970).
+    private BoardModel[] models; //The boards the moves are played on.
+
+    private long[] checkpointAt; //Where in the file every checkpoint starts.
+    private long[] checkpointMoves; //The number of moves before every checkpoint.
+    private long[] checkpointTimes; //The time of every checkpoint (milliseconds into the recording).
+    private int checkpoints; //The number of checkpoints.
+    private long moveCount; //The number of moves in the recording.
+    private long duration; //The time of the last record (milliseconds into the recording).
+
+    private long moveIndex; //The number of moves played so far.
+    private long time; //The time of the last record played (milliseconds into the recording).
+    private int nextTag = -1; //The first byte of the next record to play, or -1 at the end.
+    private int nextBoard; //The board of the next record.
+    private long nextDelay; //The milliseconds from the last record to the next one.
+    private long nextState; //The state the next record resets its board to (if it's a reset).
+
+    /**
+     * Constructor. Reads the recording through to find its checkpoints, and sets up boards of its
+     * own at the start of the game (see attach).
+     * @param file the recording.
+     * @throws IOException if the file couldn't be read or isn't a recording.
+     */
+    public GameReplay(File file) throws IOException {
+        input = new RandomAccessFile(file, "r");
+        try{
+            channel = input.getChannel();
+            moveTo(0);
+            if(readInt() != GameRecorder.MAGIC || readByte() != GameRecorder.VERSION){
+                throw new IOException(file + " isn't a recording this version can read.");
+            }
+            disks = readByte();
+            pegs = readByte();
+            int boards = readByte();
+            startTime = readLong();
+            readInt(); //The checkpoint interval, found from the checkpoints themselves.
+            if(pegs < 3 || pegs > GameState.MAX_PEGS || disks < 1 || disks > GameState.maxDisks(pegs)
+                    || boards < 1 || boards > GameRecorder.MAX_BOARDS){
+                throw new IOException(file + " has a broken header.");
+            }
+            models = new BoardModel[boards];
+            for(int i = 0; i < boards; i++){
+                models[i] = new BoardModel(disks, pegs);
+            }
+            index();
+            seek(0);
+        }
+        catch(IOException | RuntimeException e){
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads through every record, noting where the checkpoints are, how many moves there are and
+     * how long the recording lasts.
+     * @throws IOException if the file couldn't be read or a record is broken.
+     */
+    private void index() throws IOException {
+        checkpointAt = new long[16];
+        checkpointMoves = new long[16];
+        checkpointTimes = new long[16];
+        end = channel.size();
+        long moves = 0;
+        long millis = 0;
+        while(true){
+            long at = position();
+            try{
+                if(at >= end){
+                    break;
+                }
+                int tag = readByte();
+                if(tag == GameRecorder.CHECKPOINT_TAG){
+                    long checkpointMove = readLong();
+                    skip(8L * models.length);
+                    if(checkpointMove != moves){
+                        throw new IOException("The checkpoint at byte " + at + " is after move " + checkpointMove + ", not " + moves);
+                    }
+                    addCheckpoint(at, moves, millis);
+                    continue;
+                }
+                long delay = readVarint();
+                if((delay & 1) >= models.length){
+                    throw new IOException("The record at byte " + at + " is for a board that isn't in the recording.");
+                }
+                millis += delay >>> 1;
+                if(tag == GameRecorder.RESET){
+                    skip(8);
+                }
+                else{
+                    checkMove(tag, at);
+                    moves++;
+                }
+                duration = millis;
+                moveCount = moves;
+            }
+            catch(EOFException e){
+                end = at; //The recording was cut off part way through this record.
+                break;
+            }
+        }
+        if(checkpoints == 0){
+            throw new IOException("The recording has no start.");
+        }
+    }
+
+    /**
+     * Notes where a checkpoint is.
+     * @param at where in the file it starts.
+     * @param moves the number of moves before it.
+     * @param millis its time.
+     */
+    private void addCheckpoint(long at, long moves, long millis){
+        if(checkpoints == checkpointAt.length){
+            checkpointAt = Arrays.copyOf(checkpointAt, checkpoints * 2);
+            checkpointMoves = Arrays.copyOf(checkpointMoves, checkpoints * 2);
+            checkpointTimes = Arrays.copyOf(checkpointTimes, checkpoints * 2);
+        }
+        checkpointAt[checkpoints] = at;
+        checkpointMoves[checkpoints] = moves;
+        checkpointTimes[checkpoints] = millis;
+        checkpoints++;
+    }
+
+    /**
+     * Plays the recording onto a board instead of the one the replay made for itself (e.g. the
+     * model of a HanoiBoard, so the replay is drawn). The board is set to where the replay is.
+     * @param board which board of the recording (0 to getBoards() - 1, in the order they were given to GameRecorder).
+     * @param model the board to play it on, with the same number of disks and pegs as the recording.
+     */
+    public void attach(int board, BoardModel model){
+        if(board < 0 || board >= models.length){
+            throw new IndexOutOfBoundsException("The recording has " + models.length + " boards: " + board);
+        }
+        model.setState(models[board].toGameState());
+        models[board] = model;
+    }
+
+    /**
+     * Plays the next record: a move, or a board being reset.
+     * @return true if there was a record to play, false at the end of the recording.
+     * @throws IOException if the file couldn't be read or the move isn't legal.
+     */
+    public boolean step() throws IOException {
+        if(nextTag < 0){
+            return false;
+        }
+        time += nextDelay;
+        BoardModel model = models[nextBoard];
+        if(nextTag == GameRecorder.RESET){
+            model.setState(new GameState(nextState, disks, pegs));
+        }
+        else{
+            if(!model.move(MoveRing.from(nextTag), MoveRing.to(nextTag))){
+                throw new IOException("Move " + moveIndex + " of the recording isn't legal.");
+            }
+            moveIndex++;
+        }
+        readNext();
+        return true;
+    }
+
+    /**
+     * Jumps to just after a move, changing each board only once.
+     * @param k the number of moves played after the jump (kept between 0 and getMoveCount()).
+     * @throws IOException if the file couldn't be read or a move isn't legal.
+     */
+    public void seek(long k) throws IOException {
+        k = Math.max(0, Math.min(moveCount, k));
+        int low = 0;
+        int high = checkpoints - 1;
+        while(low < high){ //Finds the last checkpoint at or before k.
+            int middle = (low + high + 1) >>> 1;
+            if(checkpointMoves[middle] <= k){
+                low = middle;
+            }
+            else{
+                high = middle - 1;
+            }
+        }
+
+        moveTo(checkpointAt[low] + 9);
+        GameState[] states = new GameState[models.length];
+        for(int i = 0; i < states.length; i++){
+            states[i] = new GameState(readLong(), disks, pegs);
+        }
+        moveIndex = checkpointMoves[low];
+        time = checkpointTimes[low];
+        readNext();
+        while(moveIndex < k && nextTag >= 0){
+            time += nextDelay;
+            if(nextTag == GameRecorder.RESET){
+                states[nextBoard] = new GameState(nextState, disks, pegs);
+            }
+            else{
+                int from = MoveRing.from(nextTag) + 1;
+                int to = MoveRing.to(nextTag) + 1;
+                if(!states[nextBoard].canMove(from, to)){
+                    throw new IOException("Move " + moveIndex + " of the recording isn't legal.");
+                }
+                states[nextBoard].moveDisk(from, to);
+                moveIndex++;
+            }
+            readNext();
+        }
+        for(int i = 0; i < states.length; i++){
+            models[i].setState(states[i]);
+        }
+    }
+
+    /**
+     * Reads the next record to play (skipping checkpoints) into nextTag, nextBoard, nextDelay and nextState.
+     * @throws IOException if the file couldn't be read.
+     */
+    private void readNext() throws IOException {
+        while(position() < end){
+            int tag = readByte();
+            if(tag == GameRecorder.CHECKPOINT_TAG){
+                skip(8 + 8L * models.length);
+                continue;
+            }
+            long delay = readVarint();
+            nextTag = tag;
+            nextBoard = (int) (delay & 1);
+            nextDelay = delay >>> 1;
+            if(tag == GameRecorder.RESET){
+                nextState = readLong();
+            }
+            return;
+        }
+        nextTag = -1;
+    }
+
+    /**
+     * Checks that a byte is a move the game could have.
+     * @param move the byte.
+     * @param at where in the file it is.
+     * @throws IOException if it isn't.
+     */
+    private void checkMove(int move, long at) throws IOException {
+        int from = MoveRing.from(move);
+        int to = MoveRing.to(move);
+        if(from == to || from >= pegs || to >= pegs){
+            throw new IOException("The record at byte " + at + " isn't a move: " + move);
+        }
+    }
+
+    /**
+     * @return true if there are records left to play.
+     */
+    public boolean hasNext(){
+        return nextTag >= 0;
+    }
+
+    /**
+     * @return the milliseconds between the last record played and the next one, as they were
+     *         recorded (divide by the speed to play it faster), or -1 at the end.
+     */
+    public long nextDelay(){
+        return nextTag < 0 ? -1 : nextDelay;
+    }
+
+    /**
+     * Gets a board the recording is played on.
+     * @param board which board (0 to getBoards() - 1).
+     * @return the board.
+     */
+    public BoardModel getModel(int board){
+        return models[board];
+    }
+
+    /**
+     * @return the number of boards in the recording.
+     */
+    public int getBoards(){
+        return models.length;
+    }
+
+    /**
+     * Getter for disks.
+     * @return disks
+     */
+    public int getDisks() {
+        return disks;
+    }
+
+    /**
+     * Getter for pegs.
+     * @return pegs
+     */
+    public int getPegs() {
+        return pegs;
+    }
+
+    /**
+     * Getter for startTime.
+     * @return when the recording started, in milliseconds since 1970.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Getter for moveCount.
+     * @return the number of moves in the recording.
+     */
+    public long getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Getter for moveIndex.
+     * @return the number of moves played so far.
+     */
+    public long getMoveIndex() {
+        return moveIndex;
+    }
+
+    /**
+     * Getter for time.
+     * @return the time of the last record played, in milliseconds from the start of the recording.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Getter for duration.
+     * @return the time of the last record, in milliseconds from the start of the recording.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Getter for checkpoints.
+     * @return the number of checkpoints found in the recording.
+     */
+    public int getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Closes the file.
+     * @throws IOException if it couldn't be closed.
+     */
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * @return where in the file the next byte will be read from.
+     */
+    private long position(){
+        return bufferAt + buffer.position();
+    }
+
+    /**
+     * Reads on from a place in the file.
+     * @param at where in the file.
+     */
+    private void moveTo(long at){
+        bufferAt = at;
+        buffer.clear();
+        buffer.limit(0);
+    }
+
+    /**
+     * Skips bytes.
+     * @param bytes the number of bytes to skip.
+     * @throws EOFException if the file ends first.
+     */
+    private void skip(long bytes) throws IOException {
+        long at = position() + bytes;
+        if(at > channel.size()){
+            throw new EOFException();
+        }
+        if(bytes <= buffer.remaining()){
+            buffer.position(buffer.position() + (int) bytes);
+        }
+        else{
+            moveTo(at);
+        }
+    }
+
+    /**
+     * Reads a byte.
+     * @return the byte (0 to 255).
+     * @throws EOFException if the file ends first.
+     */
+    private int readByte() throws IOException {
+        if(!buffer.hasRemaining()){
+            bufferAt += buffer.limit();
+            buffer.clear();
+            while(buffer.hasRemaining() && channel.read(buffer, bufferAt + buffer.position()) > 0){
+                //Fills the buffer, or as much of it as the file has.
+            }
+            buffer.flip();
+            if(!buffer.hasRemaining()){
+                throw new EOFException();
+            }
+        }
+        return buffer.get() & 0xff;
+    }
+
+    /**
+     * Reads a varint (7 bits a byte, lowest first).
+     * @return the number.
+     * @throws IOException if the file ends first or the number is too long.
+     */
+    private long readVarint() throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7){
+            int b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if(b < 0x80){
+                return value;
+            }
+        }
+        throw new IOException("A number in the recording is too long.");
+    }
+
+    /**
+     * Reads an int, high byte first.
+     * @return the int.
+     * @throws EOFException if the file ends first.
+     */
+    private int readInt() throws IOException {
+        int value = 0;
+        for(int i = 0; i < 4; i++){
+            value = value << 8 | readByte();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a long, high byte first.
+     * @return the long.
+     * @throws EOFException if the file ends first.
+     */
+    private long readLong() throws IOException {
+        long value = 0;
+        for(int i = 0; i < 8; i++){
+            value = value << 8 | readByte();
+        }
+        return value;
+    }
+
+    /**
+     * Prints what's in a recording and the boards at a move.
+     * @param args file [move]
+     */
+    public static void main(String[] args) throws IOException {
+        File file = new File(args.length > 0 ? args[0] : "game.hrec");
+        GameReplay replay = new GameReplay(file);
+        try{
+            long move = args.length > 1 ? Long.parseLong(args[1]) : replay.getMoveCount();
+            System.out.printf("%d disks on %d pegs, %d boards, started %tc%n", replay.getDisks(), replay.getPegs(),
+                    replay.getBoards(), replay.getStartTime());
+            System.out.printf("%d moves over %.1f s, %d checkpoints, %d bytes%n", replay.getMoveCount(),
+                    replay.getDuration() / 1000.0, replay.getCheckpoints(), file.length());
+
+            long start = System.nanoTime();
+            replay.seek(move);
+            System.out.printf("After move %d (%.1f s in, found in %.3f ms):%n", replay.getMoveIndex(),
+                    replay.getTime() / 1000.0, (System.nanoTime() - start) / 1e6);
+            for(int board = 0; board < replay.getBoards(); board++){
+                BoardModel model = replay.getModel(board);
+                StringBuilder line = new StringBuilder("  board " + board + ":");
+                for(int peg = 0; peg < model.getPegs(); peg++){
+                    line.append(" [");
+                    for(int level = 0; level < model.height(peg); level++){
+                        line.append(level > 0 ? " " : "").append(model.diskAt(peg, level));
+                    }
+                    line.append("]");
+                }
+                System.out.println(line + (model.isWin() ? " won" : ""));
+            }
+        }
+        finally{
+            replay.close();
+        }
+    }
+}
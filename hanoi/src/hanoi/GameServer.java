@@ -0,0 +1,477 @@
+package hanoi;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Hosts versus AI matches for any number of clients at once, on localhost. Every connection
+ * plays its own matches, each on a pair of BoardModels (the client's and the AI's, no graphics)
+ * with its own AIPlayer, so it plays exactly like versus mode in HanoiMain: the client moves,
+ * then the AI answers, until one of them wins.
+ *
+ * Connections are shared between a few worker threads, each running a non-blocking Selector
+ * over its connections, so a handful of threads serve thousands of clients. One more thread
+ * accepts connections and hands them to the workers in turn.
+ *
+ * A match whose solutions aren't in SolverCache (the first of its size, or one the cache has
+ * since dropped) gets its AI ready on a thread of its own, since working them out can take a
+ * while, so the worker goes on serving its other connections meanwhile; that connection's frames
+ * wait until the AI is ready. Only when AIPlayer.isVersusReady says everything is in the cache is
+ * the AI made on the worker, as it's then just a place in the shared solutions (the cache could
+ * still drop them in between, rarely). If the AI can't be made the client gets an ERROR and the
+ * connection stays open.
+ *
+ * Every message either way is a frame of FRAME bytes: a type, then two bytes whose meaning
+ * depends on the type. Moves are packed in one byte as in MoveRing (pegs from 0).
+ * The client sends:
+ * - NEW, disks, pegs: start a match (ending any match already going).
+ * - MOVE, move, 0: make a move on the client's board.
+ * The server answers every frame with one frame, in order:
+ * - STARTED, disks, pegs: the match has started, the client moves first.
+ * - MOVED, the AI's answer (or NO_MOVE), status: the client's move was made.
+ * - ILLEGAL, the move, status: the move wasn't legal and nothing changed.
+ * - ERROR, the type of the frame that failed, 0: e.g. a move with no match going, or a game
+ *   too big to host.
+ * The status is PLAYING, CLIENT_WON or AI_WON. Clients may send frames before the answers to
+ * earlier ones come back.
+ *
+ * Run with: [port workers maxDisks] (port 0 picks any free port).
+ */
+public class GameServer {
+
+    public static final int PORT = 4343; //The port the server listens on by default.
+    public static final int FRAME = 3; //The size of every message.
+
+    public static final int NEW = 1; //Client: start a match.
+    public static final int MOVE = 2; //Client: make a move.
+    public static final int STARTED = 0x81; //Server: the match started.
+    public static final int MOVED = 0x82; //Server: the move was made (and the AI answered).
+    public static final int ILLEGAL = 0x83; //Server: the move was illegal.
+    public static final int ERROR = 0x84; //Server: the frame couldn't be done.
+
+    public static final int PLAYING = 0; //Status: nobody has won yet.
+    public static final int CLIENT_WON = 1; //Status: the client won.
+    public static final int AI_WON = 2; //Status: the AI won.
+    public static final int NO_MOVE = 0xFF; //In place of the AI's move when it didn't move.
+
+    private static final int BUFFER = 1 << 12; //The size of each connection's input and output buffers.
+
+    private static final Metrics.Counter MATCHES = Metrics.counter("server.matches"); //Counts matches started.
+    private static final Metrics.Counter CONNECTIONS = Metrics.counter("server.connections"); //Counts connections accepted.
+    private static final Metrics.Histogram MOVE_TIME = Metrics.histogram("server.move"); //Times a move and the AI's answer.
+
+    private ServerSocketChannel server; //Accepts connections.
+    private Worker[] workers; //Serve the connections.
+    private int maxDisks; //The most disks a match may have.
+    private Thread acceptor; //Accepts connections and hands them to the workers.
+    private ExecutorService builder; //Gets the AI ready, off the workers, when its solutions aren't in SolverCache.
+    private volatile boolean running; //False once the server is closed.
+
+    /**
+     * Constructor. Opens the port but doesn't serve it until start().
+     * @param port the port to listen on, or 0 for any free port.
+     * @param workers the number of threads serving connections.
+     * @param maxDisks the most disks a match may have (the AI takes longer to get ready for bigger games).
+     * @throws IOException if the port couldn't be opened.
+     */
+    public GameServer(int port, int workers, int maxDisks) throws IOException {
+        if(workers < 1){
+            throw new IllegalArgumentException("Need at least one worker: " + workers);
+        }
+        this.maxDisks = maxDisks;
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.workers = new Worker[workers];
+        for(int i = 0; i < workers; i++){
+            this.workers[i] = new Worker(Selector.open());
+        }
+        this.builder = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "GameServer builder");
+                thread.setDaemon(true); //Doesn't stop the program from closing.
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts accepting and serving connections, on threads of the server's own.
+     */
+    public void start(){
+        running = true;
+        for(int i = 0; i < workers.length; i++){
+            Thread thread = new Thread(workers[i], "GameServer worker " + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "GameServer acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Accepts connections until the server is closed, handing them to the workers in turn.
+     */
+    private void accept(){
+        int next = 0;
+        while(running){
+            try{
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true); //Frames are tiny and every one is waited for.
+                workers[next].add(channel);
+                next = (next + 1) % workers.length;
+                if(Metrics.ENABLED){
+                    CONNECTIONS.increment();
+                }
+            }
+            catch(ClosedChannelException e){
+                return;
+            }
+            catch(IOException e){
+                if(running){
+                    System.err.println("GameServer couldn't accept a connection: " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the port the server is listening on.
+     */
+    public int getPort(){
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the server and closes every connection.
+     */
+    public void close(){
+        running = false;
+        try{
+            server.close();
+        }
+        catch(IOException e){
+            //Closing anyway.
+        }
+        builder.shutdown();
+        for(Worker worker : workers){
+            worker.selector.wakeup();
+        }
+    }
+
+    /**
+     * A thread serving its share of the connections with a Selector.
+     */
+    private class Worker implements Runnable {
+
+        private Selector selector; //Says which connections can be read or written.
+        private ConcurrentLinkedQueue<SocketChannel> added = new ConcurrentLinkedQueue<>(); //Connections handed over but not registered yet.
+        private ConcurrentLinkedQueue<SelectionKey> ready = new ConcurrentLinkedQueue<>(); //Connections whose AI the builder has got ready.
+
+        /**
+         * Constructor
+         * @param selector the worker's selector.
+         */
+        Worker(Selector selector) {
+            this.selector = selector;
+        }
+
+        /**
+         * Hands a connection to the worker (from the acceptor thread).
+         * @param channel the connection, in non-blocking mode.
+         */
+        void add(SocketChannel channel){
+            added.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Hands back a connection whose AI is ready (from the builder).
+         * @param key the connection's key.
+         */
+        void ready(SelectionKey key){
+            ready.add(key);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run(){
+            try{
+                while(running){
+                    selector.select();
+                    SocketChannel channel;
+                    while((channel = added.poll()) != null){
+                        Session session = new Session(this);
+                        session.key = channel.register(selector, SelectionKey.OP_READ, session);
+                    }
+                    SelectionKey key;
+                    while((key = ready.poll()) != null){
+                        if(key.isValid()){
+                            ((Session) key.attachment()).started();
+                            serveSafely(key);
+                        }
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while(keys.hasNext()){
+                        key = keys.next();
+                        keys.remove();
+                        serveSafely(key);
+                    }
+                }
+            }
+            catch(IOException e){
+                System.err.println("GameServer worker stopped: " + e);
+            }
+            finally{
+                for(SelectionKey key : selector.keys()){
+                    close(key);
+                }
+                try{
+                    selector.close();
+                }
+                catch(IOException e){
+                    //Closing anyway.
+                }
+            }
+        }
+
+        /**
+         * Serves a connection, closing it if it fails, so one connection going wrong doesn't stop
+         * the worker and every other connection it serves.
+         * @param key the connection's key.
+         */
+        private void serveSafely(SelectionKey key){
+            try{
+                serve(key);
+            }
+            catch(IOException e){
+                close(key); //The client went away.
+            }
+            catch(RuntimeException e){
+                System.err.println("GameServer closed a connection that failed: " + e);
+                close(key);
+            }
+        }
+
+        /**
+         * Reads what a connection sent, answers every whole frame and writes the answers. While
+         * answers are waiting to be written the connection isn't read, so a client that sends
+         * without reading is slowed down rather than filling the server's memory. Nor is it read
+         * while its AI is being got ready.
+         * @param key the connection's key.
+         * @throws IOException if the connection failed.
+         */
+        private void serve(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Session session = (Session) key.attachment();
+            if(key.isReadable() && !session.building && channel.read(session.in) < 0){
+                close(key);
+                return;
+            }
+            session.in.flip();
+            while(session.in.remaining() >= FRAME && session.out.remaining() >= FRAME && !session.building){
+                session.answer(session.in.get() & 0xFF, session.in.get() & 0xFF, session.in.get() & 0xFF);
+            }
+            session.in.compact();
+
+            session.out.flip();
+            channel.write(session.out);
+            session.out.compact();
+            key.interestOps(session.out.position() > 0 ? SelectionKey.OP_WRITE : session.building ? 0 : SelectionKey.OP_READ);
+        }
+
+        /**
+         * Closes a connection.
+         * @param key the connection's key.
+         */
+        private void close(SelectionKey key){
+            key.cancel();
+            try{
+                key.channel().close();
+            }
+            catch(IOException e){
+                //Closing anyway.
+            }
+        }
+    }
+
+    /**
+     * One connection's match: the boards, the AI, and the bytes going in and out.
+     */
+    private class Session {
+
+        private Worker worker; //The worker serving the connection.
+        private SelectionKey key; //The connection's key.
+        private ByteBuffer in = ByteBuffer.allocate(BUFFER); //Bytes read but not answered yet.
+        private ByteBuffer out = ByteBuffer.allocate(BUFFER); //Answers not written yet.
+        private BoardModel client; //The client's board (null before the first match).
+        private BoardModel ai; //The AI's board.
+        private AIPlayer player; //The AI, and where it is in its moves.
+        private boolean over = true; //True when there's no match going.
+        private boolean building; //True while the builder gets the AI ready (frames wait until it's done).
+
+        /**
+         * Constructor
+         * @param worker the worker serving the connection.
+         */
+        Session(Worker worker) {
+            this.worker = worker;
+        }
+
+        /**
+         * Does what a frame asks and adds the answer to out.
+         * @param type the type of the frame.
+         * @param a the frame's first byte after the type.
+         * @param b the frame's second byte after the type.
+         */
+        void answer(int type, int a, int b){
+            if(type == NEW){
+                start(a, b);
+            }
+            else if(type == MOVE && !over){
+                move(a);
+            }
+            else{
+                reply(ERROR, type, 0);
+            }
+        }
+
+        /**
+         * Starts a match, reusing the boards if the last match was the same size. The answer
+         * waits for the builder unless the match's solutions are already in SolverCache.
+         * @param disks the number of disks.
+         * @param pegs the number of pegs.
+         */
+        private void start(final int disks, final int pegs){
+            over = true;
+            if(pegs < 3 || pegs > GameState.MAX_PEGS || disks < 1 || disks > Math.min(maxDisks, GameState.maxDisks(pegs))){
+                reply(ERROR, NEW, 0);
+                return;
+            }
+            if(client != null && client.getDisks() == disks && client.getPegs() == pegs){
+                client.reset();
+                ai.reset();
+            }
+            else{
+                client = new BoardModel(disks, pegs);
+                ai = new BoardModel(disks, pegs);
+            }
+            if(AIPlayer.isVersusReady(disks, pegs)){
+                player = makePlayer(disks, pegs);
+                started();
+                return;
+            }
+            building = true;
+            builder.execute(new Runnable() {
+                public void run() {
+                    player = makePlayer(disks, pegs);
+                    worker.ready(key); //Handing the key over makes player visible to the worker.
+                }
+            });
+        }
+
+        /**
+         * Makes the AI for a match.
+         * @param disks the number of disks.
+         * @param pegs the number of pegs.
+         * @return the AI, or null if it couldn't be made.
+         */
+        private AIPlayer makePlayer(int disks, int pegs){
+            try{
+                return AIPlayer.forVersus(disks, pegs); //Its solutions are shared through SolverCache, only its place in them is its own.
+            }
+            catch(RuntimeException e){
+                System.err.println("GameServer couldn't get the AI ready for " + disks + " disks on " + pegs + " pegs: " + e);
+                return null;
+            }
+        }
+
+        /**
+         * Answers a NEW frame once its AI has been made.
+         */
+        void started(){
+            building = false;
+            if(player == null){
+                reply(ERROR, NEW, 0);
+                return;
+            }
+            over = false;
+            if(Metrics.ENABLED){
+                MATCHES.increment();
+            }
+            reply(STARTED, client.getDisks(), client.getPegs());
+        }
+
+        /**
+         * Makes the client's move, then the AI's answer.
+         * @param move the client's move, packed.
+         */
+        private void move(int move){
+            long start = Metrics.ENABLED ? System.nanoTime() : 0;
+            if(!client.move(MoveRing.from(move), MoveRing.to(move))){
+                reply(ILLEGAL, move, PLAYING);
+                return;
+            }
+            int answer = NO_MOVE;
+            int status = PLAYING;
+            if(client.isWin()){
+                status = CLIENT_WON;
+            }
+            else if(player.randMovesLeft()){
+                int[] aiMove = player.getRandMove();
+                ai.move(aiMove[0], aiMove[1]);
+                answer = MoveRing.pack(aiMove[0], aiMove[1]) & 0xFF;
+                if(ai.isWin()){
+                    status = AI_WON;
+                }
+            }
+            over = status != PLAYING;
+            reply(MOVED, answer, status);
+            if(Metrics.ENABLED){
+                MOVE_TIME.recordSince(start);
+            }
+        }
+
+        /**
+         * Adds a frame to out.
+         * @param type the type.
+         * @param a the first byte after the type.
+         * @param b the second byte after the type.
+         */
+        private void reply(int type, int a, int b){
+            out.put((byte) type).put((byte) a).put((byte) b);
+        }
+    }
+
+    /**
+     * Runs a server until the program is stopped.
+     * @param args optional: port workers maxDisks
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxDisks = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        GameServer server = new GameServer(port, workers, maxDisks);
+        server.start();
+        System.out.println("Serving versus matches on localhost:" + server.getPort() + " with " + workers + " workers");
+        server.acceptor.join();
+    }
+}
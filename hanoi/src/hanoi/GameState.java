@@ -1,64 +1,154 @@
 package hanoi;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Random;
 
 /**
  * A class representing a state of the board in a Hanoi game.
  */
 public class GameState {
 
-    private int[][] gameState; //A 2D array representing the state of the game. (3x3 matrix)
+    public static final int MAX_DISKS = 32; //The most disks a packed state can hold with 3 or 4 pegs (2 bits per disk).
+    public static final int MAX_PEGS = 16; //The most pegs a packed state can hold (4 bits per disk).
+
+    //LOW_BITS[b] has the low bit of every b-bit disk slot set.
+    private static final long[] LOW_BITS = {0, 0, 0x5555555555555555L, 0x1249249249249249L, 0x1111111111111111L};
+
+    private static final long[] ZOBRIST = createZobrist(); //One random key per (disk, peg) pair, indexed by disk * MAX_PEGS + peg.
+    private static final Metrics.Counter MOVES = Metrics.counter("state.moves"); //Counts moveDisk calls.
+
+    private long state; //The packed state of the game. (2 bits per disk with 3 or 4 pegs)
     /*
-    Example of a gameState:
-    [1,3,0],[0,0,0],[2,0,0]
-    1 = small disk
-    2 = med disk
-    3 = large disk
+    Every disk gets a slot of bits holding the index of the peg it is on (0, 1 or 2 with three
+    pegs). A slot is 2 bits wide for up to 4 pegs, 3 bits for up to 8 and 4 bits for up to 16.
+    Disk 0 is the smallest disk and sits in the lowest slot, disk 1 in the next slot, and so on.
+    Example of a state with 3 disks:
+    0b00_10_00
+    disk 2 (large) = 00, disk 1 (med) = 10, disk 0 (small) = 00
     This represents a hanoi board that looks like this:
         |         |         |
     _▅▅███▅▅_  ___|___  __▅▅▅▅▅__
 
      e.g. the first peg has a large and small disk, and the third has a medium sized disk.
      */
-    private int[] firstStack; //The first array of the gameState
-    private int[] secondStack; //The second array of the gameState
-    private int[] thirdStack; //The third array of the gameState
-
+    private int disks; //The number of disks in the game.
+    private int pegs; //The number of pegs in the game.
+    private int bits; //The width of every disk's slot in bits.
+    private long hash; //The Zobrist hash of the state: the XOR of the key of every disk on its peg.
 
     /**
      * Constructor
-     * @param gameState a 2D array representing a gameState
+     * @param gameState a 2D array representing a gameState. Each row is a stack, top disk first,
+     *                  with disks numbered 1 (smallest) to n (largest) and 0 for an empty slot.
+     *                  There are as many pegs as rows (at least 3).
      */
     public GameState(int[][] gameState) {
-        this.gameState = gameState;
-        firstStack = gameState[0];
-        secondStack = gameState[1];
-        thirdStack = gameState[2];
+        pegs = Math.max(3, gameState.length);
+        bits = bitsPerDisk(pegs);
+        for(int i = 0; i < gameState.length; i++){
+            for(int j = 0; j < gameState[i].length; j++){
+                if(gameState[i][j] != 0){
+                    int disk = gameState[i][j] - 1;
+                    state |= (long) i << (bits * disk);
+                    disks = Math.max(disks, disk + 1);
+                }
+            }
+        }
+        hash = zobrist(state, disks, bits);
     }
 
     /**
-     * Represents a move in a disk from one stack to another. Updates all global variables.
-     * @param from the stack you're moving the disk from.
-     * @param to the stack you're placing the disk on.
+     * Constructor
+     * @param state a packed state (2 bits per disk, smallest disk in the lowest bits).
+     * @param disks the number of disks in the game.
      */
-    public void moveDisk(int from, int to){
+    public GameState(long state, int disks) {
+        this(state, disks, 3);
+    }
 
-        int[] fromStack = intToStack(from);
-        int[] toStack = intToStack(to);
+    /**
+     * Constructor
+     * @param state a packed state (bitsPerDisk(pegs) bits per disk, smallest disk in the lowest bits).
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     */
+    public GameState(long state, int disks, int pegs) {
+        if(pegs < 3 || pegs > MAX_PEGS){
+            throw new IllegalArgumentException("A GameState holds between 3 and " + MAX_PEGS + " pegs: " + pegs);
+        }
+        if(disks < 1 || disks > maxDisks(pegs)){
+            throw new IllegalArgumentException("A GameState with " + pegs + " pegs holds between 1 and " + maxDisks(pegs) + " disks: " + disks);
+        }
+        this.state = state;
+        this.disks = disks;
+        this.pegs = pegs;
+        this.bits = bitsPerDisk(pegs);
+        this.hash = zobrist(state, disks, bits);
+    }
 
-        int disk = fromStack[0];
+    /**
+     * Constructor used when the hash is already known.
+     * @param other the state being copied.
+     */
+    private GameState(GameState other) {
+        this.state = other.state;
+        this.disks = other.disks;
+        this.pegs = other.pegs;
+        this.bits = other.bits;
+        this.hash = other.hash;
+    }
 
-        if((toStack[0] == 0 || disk < toStack[0]) && disk != 0 && toStack[2] == 0){
-            toStack[2] = toStack[1];
-            toStack[1] = toStack[0];
-            toStack[0] = disk;
-            fromStack[0] = 0;
-        }
+    /**
+     * Creates the starting state of a game (all disks on the first peg).
+     * @param disks the number of disks in the game.
+     * @return the starting state.
+     */
+    public static GameState start(int disks){
+        return new GameState(0L, disks);
+    }
 
-        updateGameState();
-        gameState = cleanState();
+    /**
+     * Creates the starting state of a game with any number of pegs (all disks on the first peg).
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @return the starting state.
+     */
+    public static GameState start(int disks, int pegs){
+        return new GameState(0L, disks, pegs);
+    }
 
+    /**
+     * Works out how many bits a packed state gives every disk.
+     * @param pegs the number of pegs.
+     * @return enough bits to hold the number of any peg (2 for 3 or 4 pegs).
+     */
+    public static int bitsPerDisk(int pegs){
+        return Math.max(2, 32 - Integer.numberOfLeadingZeros(pegs - 1));
+    }
+
+    /**
+     * Works out the most disks a packed state can hold.
+     * @param pegs the number of pegs.
+     * @return the number of disk slots that fit in a long.
+     */
+    public static int maxDisks(int pegs){
+        return 64 / bitsPerDisk(pegs);
+    }
+
+    /**
+     * Represents a move in a disk from one stack to another. Does nothing if the move is illegal.
+     * @param from the stack you're moving the disk from.
+     * @param to the stack you're placing the disk on.
+     */
+    public void moveDisk(int from, int to){
+        if(Metrics.ENABLED){
+            MOVES.increment();
+        }
+        if(canMove(from, to)){
+            int disk = topDisk(from - 1);
+            state ^= (long) ((from - 1) ^ (to - 1)) << (bits * disk);
+            hash ^= ZOBRIST[disk * MAX_PEGS + from - 1] ^ ZOBRIST[disk * MAX_PEGS + to - 1]; //Takes the disk off one peg and puts it on the other.
+        }
     }
 
     /**
@@ -69,103 +159,120 @@ public class GameState {
      */
 
     public boolean canMove(int from, int to){
-        int[] fromStack = intToStack(from);
-        int[] toStack = intToStack(to);
-        int disk = fromStack[0];
-
-        if(toStack[0] == 0 && disk != 0){
-            return true;
+        if(from == to || from < 1 || from > pegs || to < 1 || to > pegs){
+            return false;
         }
+        long fromMask = pegMask(from - 1);
+        long toMask = pegMask(to - 1);
 
-        return (disk < toStack[0] && disk != 0 && toStack[2] == 0);
+        //The top disk is the lowest set bit, so the from peg must be non-empty and its top disk smaller.
+        return fromMask != 0 && Long.numberOfTrailingZeros(fromMask) < Long.numberOfTrailingZeros(toMask);
     }
 
     /**
-     * Updates firstStack, secondStack, and thirdStack to keep up with gameState variable.
+     * Finds every disk on a peg.
+     * @param peg the peg (0 to pegs - 1).
+     * @return a mask with the low bit of a disk's slot set if that disk is on the peg.
      */
-    private void updateGameState(){
-        gameState[0] = firstStack;
-        gameState[1] = secondStack;
-        gameState[2] = thirdStack;
+    private long pegMask(int peg){
+        long diff = state ^ (LOW_BITS[bits] * peg); //A slot is all zeros exactly where the disk is on peg.
+        long fold = diff;
+        for(int shift = 1; shift < bits; shift++){
+            fold |= diff >>> shift; //Gathers every bit of a slot into its low bit.
+        }
+        return ~fold & slotMask();
     }
 
     /**
-     * Makes sure that the gameState variable is in order.
-     * e.g. The 'top' disk should always be the first in each array, the second-to-top disk
-     * should always be the second in the array, and the third index in the array should only
-     * be filled if all 3 disks are on the peg.
-     * @return the cleaned version of gameState.
+     * @return a mask of the low bits of every slot used by this game's disks.
      */
-    private int[][] cleanState(){
-
-        int[][] move = gameState;
+    private long slotMask(){
+        int used = bits * disks;
+        return used == 64 ? LOW_BITS[bits] : LOW_BITS[bits] & ((1L << used) - 1);
+    }
 
-        for(int i = 0; i <= 2 ; i++){
+    /**
+     * Finds the top (smallest) disk on a peg.
+     * @param peg the peg (0 to pegs - 1).
+     * @return the disk number (0 is the smallest), or -1 if the peg is empty.
+     */
+    private int topDisk(int peg){
+        long mask = pegMask(peg);
+        if(mask == 0){
+            return -1;
+        }
+        return Long.numberOfTrailingZeros(mask) / bits;
+    }
 
-            if (move[i][0] == 0 && move[i][1] > 0){
-                move[i][0] = move[i][1];
-                move[i][1] = move[i][2];
-                move[i][2] = 0;
-            }
-            else if (move[i][0] == 0 && move[i][2] > 0){
-                move[i][0] = move[i][2];
-                move[i][1] = 0;
-                move[i][2] = 0;
-            }
+    /**
+     * Checks if state variable represents a win. (i.e. all disks are on last peg).
+     * @return the boolean -- true if a win, false if not a win.
+     */
+    public boolean isWin(){
+        return state == slotMask() * (pegs - 1); //Every slot holds the last peg. Slots are wide enough that nothing carries.
+    }
 
-            else if (move[i][1] == 0 && move[i][2] > 0){
-                move[i][1] = move[i][2];
-                move[i][2] = 0;
-            }
-        }
-        return move;
+    /**
+     * Gets the peg a disk is on.
+     * @param disk the disk (0 is the smallest).
+     * @return the peg the disk is on (0 to pegs - 1).
+     */
+    public int pegOf(int disk){
+        return (int) (state >>> (bits * disk)) & ((1 << bits) - 1);
     }
 
     /**
-     * Converts an integer (1, 2, or 3) to the corresponding stack.
-     * @param stackNum the number being converted into a stack.
-     * @return the stack that stackNum represents.
+     * Getter for the packed state.
+     * @return state
      */
-    private int[] intToStack(int stackNum){
+    public long getState() {
+        return state;
+    }
 
-        if(stackNum == 1){
-            return firstStack;
-        }
-        if(stackNum == 2){
-            return secondStack;
-        }
-        if(stackNum == 3){
-            return thirdStack;
-        }
+    /**
+     * Getter for disks.
+     * @return disks
+     */
+    public int getDisks() {
+        return disks;
+    }
 
-        return null;
+    /**
+     * Getter for pegs.
+     * @return pegs
+     */
+    public int getPegs() {
+        return pegs;
     }
 
     /**
-     * Checks if gameState variable represents a win. (i.e. all disks are on last peg).
-     * @return the boolean -- true if a win, false if not a win.
+     * Getter for hash.
+     * @return the 64-bit Zobrist hash of the state.
      */
-    public boolean isWin(){
-        int[] winState = new int[3];
-        winState[0] = 1;
-        winState[1] = 2;
-        winState[2] = 3;
-        boolean win = true;
-
-        for(int i = 0; i <= 2; i++){
-            if(thirdStack[i] != winState[i]){
-                win = false;
-            }
-        }
+    public long getHash() {
+        return hash;
+    }
 
-        return win;
+    /**
+     * @return a copy of this GameState that may be altered without changing the original.
+     */
+    public GameState copy(){
+        return new GameState(this);
     }
 
     /**
-     * Getter for global gameState variable.
-     * @return gameState
+     * Builds the 2D array form of the state: one row per stack, top disk first, with
+     * disks numbered 1 (smallest) to n (largest) and 0 for an empty slot.
+     * @return the state as a pegs by n matrix.
      */
     public int[][] getGameState() {
+        int[][] gameState = new int[pegs][disks];
+        int[] heights = new int[pegs];
+        for(int disk = 0; disk < disks; disk++){
+            int peg = pegOf(disk);
+            gameState[peg][heights[peg]] = disk + 1;
+            heights[peg]++;
+        }
         return gameState;
     }
 
@@ -178,30 +285,65 @@ public class GameState {
         return !alreadyMoved.contains(this);
     }
 
+    /**
+     * Checks whether the current gameState already exists in a path of previous gameStates.
+     * @param alreadyMoved the path of gameStates already reached.
+     * @return true if the gameState does not appear in the path, false if it does
+     */
+    public boolean isNotRedundant(StatePath alreadyMoved){
+        return !alreadyMoved.contains(this);
+    }
+
 
     /**
      * Equals method for GameState class.
      * @param object the object being compared to this GameState.
-     * @return true if they have the same gameState variable, false if they don't.
+     * @return true if they have the same state and number of disks and pegs, false if they don't.
      */
     @Override
     public boolean equals(Object object){
         if(object instanceof GameState){
+            GameState other = (GameState) object;
+            return state == other.state && disks == other.disks && pegs == other.pegs;
+        }
+        return false;
+    }
 
-            int[][] objGS = ((GameState) object).getGameState();
-            int[][] thisGS = this.gameState;
+    /**
+     * Hash code for GameState class. Equal states always have equal Zobrist hashes.
+     * @return the Zobrist hash folded into an int.
+     */
+    @Override
+    public int hashCode(){
+        return (int) (hash ^ (hash >>> 32));
+    }
 
-            for(int i = 0; i < 3; i++){
-                for(int j = 0; j < 3; j++){
-                    if(objGS[i][j] != thisGS[i][j]){
-                        return false;
-                    }
-                }
-            }
+    /**
+     * Works out the Zobrist hash of a packed state from scratch.
+     * @param state the packed state.
+     * @param disks the number of disks in the game.
+     * @param bits the width of every disk's slot.
+     * @return the XOR of the key of every disk on its peg.
+     */
+    private static long zobrist(long state, int disks, int bits){
+        long hash = 0;
+        for(int disk = 0; disk < disks; disk++){
+            int peg = (int) (state >>> (bits * disk)) & ((1 << bits) - 1);
+            hash ^= ZOBRIST[disk * MAX_PEGS + peg];
         }
-        else{
-            return false;
+        return hash;
+    }
+
+    /**
+     * Fills the table of Zobrist keys. Uses a fixed seed so hashes are the same on every run.
+     * @return the table of keys.
+     */
+    private static long[] createZobrist(){
+        Random random = new Random(221);
+        long[] keys = new long[maxDisks(3) * MAX_PEGS];
+        for(int i = 0; i < keys.length; i++){
+            keys[i] = random.nextLong();
         }
-        return true;
+        return keys;
     }
 }
@@ -1,38 +1,103 @@
 package hanoi;
 
+import acm.graphics.GCanvas;
 import acm.graphics.GCompound;
 import acm.program.GraphicsProgram;
 
 import java.awt.*;
 
 /**
- * The game board in a game of Hanoi.
+ * The game board in a game of Hanoi. Draws a BoardModel: every change to the model is shown
+ * by moving Disks between the DiskStacks, straight away or (after animate) flying them there
+ * through an Animator. Boards with many disks are drawn by a BoardView instead, in one paint pass
+ * without a Disk for every disk (those aren't animated: the view always shows the model as it is).
  */
-public class HanoiBoard extends GCompound {
+public class HanoiBoard extends GCompound implements BoardListener {
 
     protected GraphicsProgram canvas; //The GraphicsProgram the board will be drawn on.
 
-    private int START_X = 100; //The starting X coordinate for the pegs.
+    private static int START_X = 100; //The starting X coordinate for the pegs.
     private int START_Y; //The Y coordinate for the pegs.
-    private int DX = 230; //The distance between pegs.
+    private static int DX = 230; //The distance between pegs.
+    public static final int BATCHED_DISKS = 8; //Boards with more disks than this are drawn by a BoardView.
 
-    private Peg peg1; //First peg
-    private Peg peg2; //Second peg
-    private Peg peg3; //Third peg
+    private Peg[] pegs; //The pegs, first to last (null when drawn by a BoardView).
+    private DiskStack[] stacks; //The stacks, one on each peg (null when drawn by a BoardView).
+    private BoardView view; //Draws the whole board in one pass (null when drawn with Disks).
+    private Animator.Track track; //Flies the Disks to where they moved (null if they're put there straight away).
 
-    private DiskStack stack1; //First stack
-    private DiskStack stack2; //Second stack
-    private DiskStack stack3; //Third stack
+    private BoardModel model; //The rules and state of the game shown on this board.
 
     /**
-     * Constructor for HanoiBoard
+     * Constructor for a 3-disk 3-peg HanoiBoard
      * @param canvas the GraphicsProgram to draw the board on top of.
      * @param y the y coordinate of the pegs.
      */
     public HanoiBoard(GraphicsProgram canvas, int y) {
+        this(canvas, y, 3, 3);
+    }
+
+    /**
+     * Constructor for HanoiBoard
+     * @param canvas the GraphicsProgram to draw the board on top of.
+     * @param y the y coordinate of the pegs.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     */
+    public HanoiBoard(GraphicsProgram canvas, int y, int disks, int pegs) {
+        this(canvas, y, disks, pegs, disks > BATCHED_DISKS);
+    }
+
+    /**
+     * Constructor for HanoiBoard
+     * @param canvas the GraphicsProgram to draw the board on top of.
+     * @param y the y coordinate of the pegs.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @param batched true to draw the board with a BoardView, false to draw it with Pegs and Disks.
+     */
+    public HanoiBoard(GraphicsProgram canvas, int y, int disks, int pegs, boolean batched) {
         this.canvas = canvas;
         START_Y = y;
-        DrawPegs();
+        model = new BoardModel(disks, pegs);
+        if(batched){
+            view = new BoardView(canvas, model, START_X, START_Y, DX, Color.pink);
+            canvas.add(view);
+        }
+        else{
+            DrawPegs();
+        }
+        model.addListener(this);
+    }
+
+    /**
+     * Works out how wide the canvas must be to fit a board.
+     * @param pegs the number of pegs on the board.
+     * @return the width of the board, with a margin on both sides.
+     */
+    public static int widthFor(int pegs){
+        return START_X + pegs*DX;
+    }
+
+    /**
+     * Makes the Disks fly to where they move instead of jumping there. Does nothing for a board
+     * drawn by a BoardView.
+     * @param animator the animator to run the flights.
+     */
+    public void animate(Animator animator){
+        if(view == null && track == null){
+            track = animator.newTrack(model.getDisks() * 4);
+        }
+    }
+
+    /**
+     * Sets how long each Disk takes to fly to where it moved.
+     * @param millis the time in milliseconds (under two frames, the Disks jump there).
+     */
+    public void setAnimationTime(int millis){
+        if(track != null){
+            track.setDuration(millis);
+        }
     }
 
     /**
@@ -41,41 +106,129 @@ public class HanoiBoard extends GCompound {
     private void DrawPegs(){
         int x = START_X;
 
-        this.peg1 = new Peg(canvas,x,START_Y);
-        this.stack1 = new DiskStack(canvas,x,START_Y, Color.pink,true,true,true);
-        x = x + DX;
-
-        this.peg2 = new Peg(canvas,x,START_Y);
-        this.stack2 = new DiskStack(canvas,x,START_Y, Color.pink,false,false,false);
-        x = x + DX;
-
-        this.peg3 = new Peg(canvas,x,START_Y);
-        this.stack3 = new DiskStack(canvas,x,START_Y, Color.pink,false,false,false);
-        x = x + DX;
+        this.pegs = new Peg[model.getPegs()];
+        this.stacks = new DiskStack[model.getPegs()];
+        for(int i = 0; i < pegs.length; i++){
+            this.pegs[i] = new Peg(canvas,x,START_Y);
+            this.stacks[i] = new DiskStack(canvas,x,START_Y, Color.pink,model.getDisks(),i == 0);
+            x = x + DX;
+        }
     }
 
     /**
      * Getter for stack1
-     * @return stack1
+     * @return stack1 (null when drawn by a BoardView)
      */
     public DiskStack getStack1() {
-        return stack1;
+        return getStack(0);
     }
 
     /**
      * Getter for stack2
-     * @return stack2
+     * @return stack2 (null when drawn by a BoardView)
      */
     public DiskStack getStack2() {
-        return stack2;
+        return getStack(1);
     }
 
     /**
      * Getter for stack3
-     * @return stack3
+     * @return stack3 (null when drawn by a BoardView)
      */
     public DiskStack getStack3() {
-        return stack3;
+        return getStack(2);
+    }
+
+    /**
+     * Gets a stack by number.
+     * @param num the number of the stack (0 to getPegs() - 1).
+     * @return the stack, or null if there's no stack with that number (or the board is drawn by a BoardView).
+     */
+    public DiskStack getStack(int num){
+        if(stacks == null || num < 0 || num >= stacks.length){
+            return null;
+        }
+        return stacks[num];
+    }
+
+    /**
+     * @return the number of pegs (and stacks) on the board.
+     */
+    public int getPegs(){
+        return model.getPegs();
+    }
+
+    /**
+     * Tells the program what stack the user clicked on (if any).
+     * @param x the X coordinate of where the player clicked.
+     * @param y the Y coordinate of where the player clicked.
+     * @return the number of the stack that was clicked on (-1 if none were clicked).
+     */
+    public int stackAt(int x, int y){
+        if(view != null){
+            return view.pegAt(x, y);
+        }
+        for(int i = 0; i < stacks.length; i++){
+            if(stacks[i].isClicked(x,y)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Picks up the top disk of a stack (moves it up without taking it off the stack).
+     * @param num the number of the stack.
+     * @return true if a disk was picked up, false if the stack is empty.
+     */
+    public boolean lift(int num){
+        if(model.height(num) == 0){
+            return false;
+        }
+        if(track != null){
+            track.finish(); //The Disk to pick up might still be flying.
+        }
+        if(view != null){
+            view.setLifted(num);
+        }
+        else{
+            stacks[num].lift();
+        }
+        return true;
+    }
+
+    /**
+     * Puts the top disk of a stack back down after lift().
+     * @param num the number of the stack.
+     */
+    public void lower(int num){
+        if(track != null){
+            track.finish();
+        }
+        if(view != null){
+            view.setLifted(-1);
+        }
+        else{
+            stacks[num].lower();
+        }
+    }
+
+    /**
+     * Getter for model
+     * @return model
+     */
+    public BoardModel getModel() {
+        return model;
+    }
+
+    /**
+     * Moves a disk on the board, if it's legal.
+     * @param from the number of the stack the disk is coming from.
+     * @param to the number of the stack the disk is going to.
+     * @return true if the disk was moved, false if the move was illegal.
+     */
+    public boolean move(int from, int to){
+        return model.move(from, to);
     }
 
     /**
@@ -83,9 +236,78 @@ public class HanoiBoard extends GCompound {
      * @return true if it's a win, false if it's not
      */
     public boolean checkWin(){
-        if(stack1.empty() && stack2.empty()){
-            return true;
+        return model.isWin();
+    }
+
+    /**
+     * Moves the Disk to match a move in the model. With an animator, the Disk is on its new stack
+     * straight away but only flies there once the flights before it are done.
+     * @param from the peg the disk came from.
+     * @param to the peg the disk went to.
+     * @param disk the disk.
+     */
+    @Override
+    public void diskMoved(int from, int to, int disk){
+        if(view != null){
+            if(view.getLifted() == from){
+                view.setLifted(-1);
+            }
+            view.repaintPeg(from);
+            view.repaintPeg(to);
+            return;
+        }
+        if(track == null){
+            getStack(to).add(getStack(from).pop());
+            return;
+        }
+        Disk moved = getStack(from).pop();
+        DiskStack stack = getStack(to);
+        int liftY = START_Y + Peg.PEGBASE_HEIGHT - Peg.PEGPOLE_HEIGHT - Disk.height; //Clear of the tops of the pegs.
+        track.fly(moved, stack.slotX(moved), stack.slotY(), liftY);
+        stack.push(moved);
+    }
+
+    /**
+     * Takes every Disk off the stacks and puts them back where the model says they are. The canvas
+     * is only repainted once, after every Disk is in place.
+     */
+    @Override
+    public void boardReset(){
+        if(view != null){
+            view.repaintAll(); //The view draws straight from the model, so there's nothing to lay out.
+            return;
+        }
+        if(track != null){
+            track.clear(); //Every Disk is put in place below, so there's nowhere left to fly.
+        }
+        GCanvas gCanvas = canvas.getGCanvas();
+        boolean autoRepaint = gCanvas.getAutoRepaintFlag();
+        gCanvas.setAutoRepaintFlag(false);
+        try{
+            layOut();
+        }
+        finally{
+            gCanvas.setAutoRepaintFlag(autoRepaint);
+        }
+        gCanvas.repaint();
+    }
+
+    /**
+     * Takes every Disk off the stacks and puts them back where the model says they are.
+     */
+    private void layOut(){
+        Disk[] bySize = new Disk[model.getDisks()];
+        for(int peg = 0; peg < model.getPegs(); peg++){
+            DiskStack stack = getStack(peg);
+            while(!stack.empty()){
+                Disk disk = stack.pop();
+                bySize[disk.getSize()] = disk;
+            }
+        }
+        for(int peg = 0; peg < model.getPegs(); peg++){
+            for(int level = 0; level < model.height(peg); level++){
+                getStack(peg).add(bySize[model.diskAt(peg, level)]);
+            }
         }
-        return false;
     }
 }
@@ -4,14 +4,29 @@ import acm.graphics.GLabel;
 import acm.program.GraphicsProgram;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 import javax.swing.*;
 
 /**
- * A 3-disk 3-peg towers of Hanoi game. The user can choose between three different game modes:
+ * A towers of Hanoi game, with 3 disks and 3 pegs unless the "disks" and "pegs" parameters say
+ * otherwise (e.g. run with disks=5 pegs=4). The user can choose between three different game modes:
  * Single Player: A regular Hanoi game.
- * Versus AI: The user competes against an AI to complete the puzzle in less moves.
- * Demonstration: The user gets to watch a demonstration on the best possible hanoi solution.
+ * Versus AI: The user competes against an AI to complete the puzzle in less moves. With skill=n
+ * (0 to 100) the AI makes a move that gets it closer to the win n% of the time, and picks each
+ * move as it goes instead of playing a solution picked at the start (with more than 3 pegs only
+ * up to 15 disks on 4 pegs, or the equivalent; bigger games ignore the skill and play the best moves).
+ * Demonstration: The user gets to watch a demonstration on the best possible hanoi solution, at any
+ * speed from 0.25 to 1000 moves a second, and can jump straight to any move.
+ * In single player and versus modes the user can undo and redo their moves (the Undo and Redo
+ * buttons, or Ctrl+Z and Ctrl+Y).
+ * With record=file every move of the game is recorded to the file (see GameRecorder), and with
+ * replay=file a recording is played back instead of showing the menu, speed=n times as fast as it
+ * was played (1 by default), starting after move from=k (0 by default).
  * Created by Kelly on 11/18/16.
  */
 public class HanoiMain extends GraphicsProgram {
@@ -19,11 +34,26 @@ public class HanoiMain extends GraphicsProgram {
 
     //==================General==================
 
-    private static final int WIDTH = 800; //Width of the canvas.
+    private static final int WIDTH = 800; //Narrowest width of the canvas.
     private static final int HEIGHT = 300; //Recommended height per HanoiBoard.
+    private int disks = 3; //Number of disks in the game.
+    private int pegs = 3; //Number of pegs in the game.
+    private int width = WIDTH; //Width of the canvas (wider for more pegs).
     private int moves = 0; //Number of moves the user took.
-    private Disk pickedDisk = null; //Disk picked up
+    private int pickedStack = -1; //The number of the stack the disk was picked up from (-1 if no disk is picked up)
     private HanoiBoard userBoard; //The board the user uses
+    private MoveLog history = new MoveLog(); //The user's moves, for undo and redo.
+    private Animator animator; //Flies the disks between stacks on every board.
+
+    private static final Metrics.Histogram PRESS = Metrics.histogram("ui.mousePressed"); //Times handling a click.
+    private static final Metrics.Histogram PRESS_TO_PAINT = Metrics.histogram("ui.mousePressed.repaint"); //Times a click until its repaint is done.
+    private static final Metrics.Histogram DEMO_FRAME = Metrics.histogram("ui.demo.frame"); //Times a demo frame.
+    private long pressedAt; //When the last click came in (from System.nanoTime()).
+    private Runnable painted = new Runnable() { //Runs after the repaints a click asked for, which are queued before it.
+        public void run() {
+            PRESS_TO_PAINT.recordSince(pressedAt);
+        }
+    };
 
     //================Booleans that tell the program what mode the user chose================
 
@@ -38,15 +68,39 @@ public class HanoiMain extends GraphicsProgram {
     private boolean isPlayerTurn = true;
     private Timer timer; //Used to animate the Demonstration mode
 
+    private static final double[] SPEEDS = {0.25, 0.5, 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000}; //The demo speeds, in moves per second.
+    private static final int FRAME = 16; //The shortest time between demo frames in milliseconds (about 60 a second).
+    private static final int COALESCE = 8; //When more moves than this are due in one frame, the demo jumps over them.
+    private double speed = 1; //Demo moves per second.
+    private double owedMoves; //Demo moves that are due but not done yet (less than one, unless the demo is behind).
+    private long lastFrame; //When the last demo frame ran (from System.nanoTime()).
+    private GLabel demoStatus; //Tells the user which move the demo is on.
+    private JComboBox<String> speedBox; //Lets the user pick the demo speed.
+    private JTextField seekField; //Lets the user type a move for the demo to jump to.
+
     private GLabel versusTurn; //The label that tells the user whose move it is in versus mode
     private AIPlayer AI; //The AI player.
+    private AIBootstrap bootstrap; //Gets the AI player ready in the background.
+    private GLabel loading; //The label shown while the AI is getting ready.
 
     //---------- Strings for Versus Labels -----------
     private String yourTurn = "It's your turn.";
     private String AiTurn = "It's the AI's turn.";
     private String Loss = "You lose!";
+    private String loadingAI = "Loading AI...";
+    private String loadingFailed = "The AI couldn't be loaded.";
     //---------------------------------------------
 
+    //================Recording and replay================
+
+    private GameRecorder recorder; //Records the game, if the "record" parameter names a file.
+    private GameReplay replay; //Plays back the recording the "replay" parameter names.
+    private Timer replayTimer; //Fires when the next move of the replay is due.
+    private double replaySpeed = 1; //How many times as fast as it was recorded the replay plays.
+    private double replayFrom; //Where the replay was when it started playing (milliseconds into the recording).
+    private long replayStarted; //When the replay started playing (from System.nanoTime()).
+    private String replayFailed = "The recording couldn't be played.";
+
     //==================Buttons==================
     private Button single; //Button that, if clicked, makes the mode single player
     private Button versus; //Button that, if clicked, makes the mode versus
@@ -60,9 +114,39 @@ public class HanoiMain extends GraphicsProgram {
     public void init() {
         this.resize(200, 200);
         addMouseListeners();
+        addKeyListeners();
         timer = new Timer(0,this);
         timer.setInitialDelay(1000);
         setupJavaTimer();
+        animator = new Animator();
+        pegs = readParameter("pegs", 3, 3, GameState.MAX_PEGS);
+        disks = readParameter("disks", 3, 1, GameState.maxDisks(pegs));
+        width = Math.max(WIDTH, HanoiBoard.widthFor(pegs));
+        int skill = readParameter("skill", -1, -1, 100);
+        bootstrap = new AIBootstrap(disks, pegs, skill < 0 ? -1 : skill / 100.0);
+        bootstrap.start();
+    }
+
+    /**
+     * Reads a number given to the program as a parameter (e.g. disks=5).
+     * @param name the name of the parameter.
+     * @param fallback the number used if the parameter is missing or isn't a number.
+     * @param min the smallest number allowed.
+     * @param max the largest number allowed.
+     * @return the number, kept between min and max.
+     */
+    private int readParameter(String name, int fallback, int min, int max){
+        String value = getParameter(name);
+        int number = fallback;
+        if(value != null){
+            try{
+                number = Integer.parseInt(value.trim());
+            }
+            catch(NumberFormatException e){
+                number = fallback;
+            }
+        }
+        return Math.max(min, Math.min(max, number));
     }
 
 
@@ -70,6 +154,10 @@ public class HanoiMain extends GraphicsProgram {
      * Creates the buttons for the user to choose a mode.
      */
     public void run(){
+        if(getParameter("replay") != null){
+            createReplayBoard();
+            return;
+        }
         single = new Button(this, 50, 50, "Single Player", "#fffcef");
         versus = new Button(this, 50, 100, "Versus AI", "#ffefef");
         demo = new Button(this, 50, 150, "Demonstration", "#eff7ff");
@@ -81,6 +169,7 @@ public class HanoiMain extends GraphicsProgram {
      */
     @Override
     public void mousePressed(MouseEvent event){
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
         if(isMenu){
             chooseMode(event);
         }
@@ -90,6 +179,28 @@ public class HanoiMain extends GraphicsProgram {
         else if(isVersus && isPlayerTurn){
                 playerTurn(event);
         }
+        if(Metrics.ENABLED){
+            PRESS.recordSince(start);
+            pressedAt = start;
+            SwingUtilities.invokeLater(painted);
+        }
+    }
+
+    /**
+     * Undoes (Ctrl+Z) or redoes (Ctrl+Y or Ctrl+Shift+Z) the user's moves.
+     * @param event the key.
+     */
+    @Override
+    public void keyPressed(KeyEvent event){
+        if(!event.isControlDown()){
+            return;
+        }
+        if(event.getKeyCode() == KeyEvent.VK_Z && !event.isShiftDown()){
+            undo();
+        }
+        else if(event.getKeyCode() == KeyEvent.VK_Y || event.getKeyCode() == KeyEvent.VK_Z){
+            redo();
+        }
     }
 
     /**
@@ -105,6 +216,7 @@ public class HanoiMain extends GraphicsProgram {
             isSinglePlayer = true;
             isMenu = false;
             removeButtons();
+            bootstrap.none();
             createSingleBoard();
         }
 
@@ -122,7 +234,6 @@ public class HanoiMain extends GraphicsProgram {
             isPlayerTurn = false;
             removeButtons();
             createDemoBoard();
-            timer.start();
         }
     }
 
@@ -131,9 +242,9 @@ public class HanoiMain extends GraphicsProgram {
      */
 
     private void playerTurn(MouseEvent event){
-        DiskStack stack = clickedStack(event.getX(), event.getY());
-        if(stack!=null) {
-            if (pickedDisk == null) {
+        int stack = userBoard.stackAt(event.getX(), event.getY());
+        if(stack >= 0) {
+            if (pickedStack < 0) {
                 grabDisk(stack);
             } else {
                 putDisk(stack);
@@ -157,13 +268,7 @@ public class HanoiMain extends GraphicsProgram {
             move = AI.getRandMove();
         }
 
-        DiskStack fromStack = intToStack(move[0]);
-        DiskStack toStack = intToStack(move[1]);
-
-
-        Disk AIPickedDisk = fromStack.pop();
-
-        toStack.add(AIPickedDisk);
+        AiBoard.move(move[0], move[1]);
 
         switchTurn();
 
@@ -178,21 +283,40 @@ public class HanoiMain extends GraphicsProgram {
         timer = new Timer(1000, new ActionListener() {
             public void actionPerformed(ActionEvent evt) {
 
-                int[] move = AI.getMove();
-
-                DiskStack fromStack = intToStack(move[0]);
-                DiskStack toStack = intToStack(move[1]);
-
-
-                Disk AIPickedDisk = fromStack.pop();
-
-                toStack.add(AIPickedDisk);
+                demoFrame();
 
                 timerCheck();
             }
         });
     }
 
+    /**
+     * Does the demo moves that are due since the last frame, going by the clock rather than by
+     * counting frames, so the demo keeps its speed even when frames are late. If more moves are due
+     * than can be shown one by one, the board jumps straight to where they end (one repaint).
+     */
+    private void demoFrame(){
+        long now = System.nanoTime();
+        owedMoves += (now - lastFrame) / 1e9 * speed;
+        lastFrame = now;
+
+        long due = Math.min((long) (owedMoves + 1e-6), AI.getMoveCount() - AI.getMoveIndex());
+        owedMoves = Math.max(0, owedMoves - due);
+        if(due > COALESCE){
+            AiBoard.getModel().setState(AI.seek(AI.getMoveIndex() + due));
+        }
+        else{
+            for(long i = 0; i < due; i++){
+                int[] move = AI.getMove();
+                AiBoard.move(move[0], move[1]);
+            }
+        }
+        updateDemoStatus();
+        if(Metrics.ENABLED){
+            DEMO_FRAME.recordSince(now);
+        }
+    }
+
     /**
      * Stops the demo from continuing to run after it has already been solved.
      */
@@ -203,26 +327,123 @@ public class HanoiMain extends GraphicsProgram {
         }
     }
 
+    /**
+     * Starts (or restarts) the demo timer from the current move.
+     */
+    private void startDemo(){
+        lastFrame = System.nanoTime();
+        owedMoves = 0;
+        timer.start();
+    }
+
+    /**
+     * Changes how fast the demo plays.
+     * @param movesPerSecond the new speed.
+     */
+    private void setDemoSpeed(double movesPerSecond){
+        speed = movesPerSecond;
+        timer.setDelay((int) Math.max(FRAME, Math.round(1000 / speed)));
+        AiBoard.setAnimationTime((int) Math.min(Animator.DURATION, 800 / speed)); //Each flight ends before the next move.
+        updateDemoStatus();
+    }
+
+    /**
+     * Jumps the demo to a move, working out the board straight from the move number and laying it
+     * out in one repaint instead of playing the moves between.
+     * @param k the number of moves done after the jump (kept between 0 and the last move).
+     */
+    private void seekDemo(long k){
+        k = Math.max(0, Math.min(AI.getMoveCount(), k));
+        AiBoard.getModel().setState(AI.seek(k));
+        owedMoves = 0;
+        updateDemoStatus();
+        if(AI.movesLeft() && !timer.isRunning()){
+            startDemo();
+        }
+    }
+
+    /**
+     * Shows which move the demo is on and how fast it's going.
+     */
+    private void updateDemoStatus(){
+        demoStatus.setLabel("Move " + AI.getMoveIndex() + " of " + AI.getMoveCount() + " at " + speedName(speed));
+    }
+
+    /**
+     * Writes a speed for the user.
+     * @param movesPerSecond the speed.
+     * @return e.g. "0.25x" or "10x".
+     */
+    private static String speedName(double movesPerSecond){
+        if(movesPerSecond == Math.rint(movesPerSecond)){
+            return (long) movesPerSecond + "x";
+        }
+        return movesPerSecond + "x";
+    }
+
+    /**
+     * Adds the speed and jump controls under the demo board.
+     */
+    private void createDemoControls(){
+        speedBox = new JComboBox<>();
+        for(double s : SPEEDS){
+            speedBox.addItem(speedName(s));
+        }
+        speedBox.setSelectedItem(speedName(speed));
+        speedBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                setDemoSpeed(SPEEDS[speedBox.getSelectedIndex()]);
+            }
+        });
+
+        seekField = new JTextField(10);
+        JButton jump = new JButton("Jump");
+        ActionListener seek = new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                try{
+                    seekDemo(Long.parseLong(seekField.getText().trim()));
+                }
+                catch(NumberFormatException e){
+                    seekField.setText(Long.toString(AI.getMoveIndex()));
+                }
+            }
+        };
+        seekField.addActionListener(seek);
+        jump.addActionListener(seek);
+
+        add(new JLabel("Speed"), SOUTH);
+        add(speedBox, SOUTH);
+        add(new JLabel("Jump to move"), SOUTH);
+        add(seekField, SOUTH);
+        add(jump, SOUTH);
+        validate();
+    }
+
     /**
      * Picks up the top disk from a selected stack of disks.
-     * @param stack is the stack selected.
+     * @param stack is the number of the stack selected.
      */
 
-    private void grabDisk(DiskStack stack){
-        if(stack != null && !stack.empty()){
-            pickedDisk = stack.pop();
+    private void grabDisk(int stack){
+        if(userBoard.lift(stack)){
+            pickedStack = stack;
         }
     }
 
     /**
-     * Places the selected disk on top of the selected stack.
-     * @param stack is the selected stack.
+     * Places the selected disk on top of the selected stack. Putting it back on the stack it
+     * came from just puts it down again, without counting a move.
+     * @param stack is the number of the selected stack.
      */
 
-    private void putDisk(DiskStack stack){
-        if(stack.empty() || pickedDisk.canBePlacedOn(stack.peek())){
-            stack.add(pickedDisk);
-            pickedDisk = null;
+    private void putDisk(int stack){
+        if(stack == pickedStack){
+            userBoard.lower(stack);
+            pickedStack = -1;
+        }
+        else if(userBoard.move(pickedStack, stack)){
+            history.add(pickedStack, stack);
+            pickedStack = -1;
             moves++;
             if(isVersus){
                 switchTurn();
@@ -232,29 +453,69 @@ public class HanoiMain extends GraphicsProgram {
     }
 
     /**
-     * Tells the program what stack the user clicked on (if any).
-     * @param x the X coordinate of where the player clicked.
-     * @param y the Y coordinate of where the player clicked.
-     * @return the stack that was clicked on (null if none were clicked).
+     * Takes back the user's last move by making the opposite move. A disk the user has picked up
+     * is put back down first, so it's never left in the air over a stack it's no longer on top of.
+     * In versus mode the AI's moves stand, and it's still the user's turn.
      */
-
-    private DiskStack clickedStack(int x, int y){
-        DiskStack stack1 = userBoard.getStack1();
-        DiskStack stack2 = userBoard.getStack2();
-        DiskStack stack3 = userBoard.getStack3();
-
-        if(stack1.isClicked(x,y)){
-            return stack1;
+    private void undo(){
+        if(userBoard == null || !isPlayerTurn){
+            return;
         }
+        putBack();
+        int move = history.undo();
+        if(move >= 0){
+            userBoard.move(MoveRing.to(move), MoveRing.from(move));
+            moves--;
+        }
+    }
 
-        else if(stack2.isClicked(x,y)){
-            return stack2;
+    /**
+     * Makes again the last move the user undid.
+     */
+    private void redo(){
+        if(userBoard == null || !isPlayerTurn){
+            return;
         }
+        putBack();
+        int move = history.redo();
+        if(move >= 0){
+            userBoard.move(MoveRing.from(move), MoveRing.to(move));
+            moves++;
+            checkWin();
+        }
+    }
 
-        else if(stack3.isClicked(x,y)){
-            return stack3;
+    /**
+     * Puts down the disk the user has picked up, if there is one.
+     */
+    private void putBack(){
+        if(pickedStack >= 0){
+            userBoard.lower(pickedStack);
+            pickedStack = -1;
         }
-        return null;
+    }
+
+    /**
+     * Adds the undo and redo buttons under the user's board.
+     */
+    private void createUndoControls(){
+        JButton undo = new JButton("Undo");
+        JButton redo = new JButton("Redo");
+        undo.setFocusable(false); //So the canvas keeps the keys.
+        redo.setFocusable(false);
+        undo.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                undo();
+            }
+        });
+        redo.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                redo();
+            }
+        });
+        add(undo, SOUTH);
+        add(redo, SOUTH);
+        validate();
     }
 
     /**
@@ -262,8 +523,11 @@ public class HanoiMain extends GraphicsProgram {
      * Used for single player.
      */
     private void createSingleBoard(){
-        this.resize(WIDTH, HEIGHT + 20);
-        userBoard = new HanoiBoard(this, 200);
+        this.resize(width, HEIGHT + 20);
+        userBoard = new HanoiBoard(this, 200, disks, pegs);
+        userBoard.animate(animator);
+        record(userBoard);
+        createUndoControls();
     }
 
     /**
@@ -272,9 +536,24 @@ public class HanoiMain extends GraphicsProgram {
      * Used for demonstration mode.
      */
     private void createDemoBoard(){
-        this.resize(WIDTH, HEIGHT + 20);
-        AiBoard = new HanoiBoard(this, 200);
-        AI = new AIPlayer();
+        this.resize(width, HEIGHT + 20);
+        AiBoard = new HanoiBoard(this, 200, disks, pegs);
+        AiBoard.animate(animator);
+        record(AiBoard);
+        loading = new GLabel(loadingAI, width/2-60, 40);
+        loading.setFont("Helvetica-18");
+        add(loading);
+        whenReady(bootstrap.demo(), new Runnable() {
+            public void run() {
+                remove(loading);
+                demoStatus = new GLabel("", width/2-60, 40);
+                demoStatus.setFont("Helvetica-18");
+                add(demoStatus);
+                createDemoControls();
+                setDemoSpeed(speed);
+                startDemo();
+            }
+        });
     }
 
     /**
@@ -284,15 +563,135 @@ public class HanoiMain extends GraphicsProgram {
      * Used for versus mode.
      */
     private void createVersusBoard(){
-        this.resize(WIDTH, HEIGHT*2 + 20);
-        versusTurn = new GLabel(yourTurn, WIDTH/2-60, HEIGHT);
+        this.resize(width, HEIGHT*2 + 20);
+        versusTurn = new GLabel(loadingAI, width/2-60, HEIGHT);
         versusTurn.setFont("Helvetica-18");
         add(versusTurn);
+        loading = versusTurn;
 
-        AI = new AIPlayer();
+        isPlayerTurn = false; //The user waits until the AI is ready.
+        whenReady(bootstrap.versus(), new Runnable() {
+            public void run() {
+                isPlayerTurn = true;
+                versusTurn.setLabel(yourTurn);
+            }
+        });
 
-        AiBoard = new HanoiBoard(this, 200);
-        userBoard = new HanoiBoard(this, 500);
+        AiBoard = new HanoiBoard(this, 200, disks, pegs);
+        userBoard = new HanoiBoard(this, 500, disks, pegs);
+        AiBoard.animate(animator);
+        userBoard.animate(animator);
+        record(AiBoard, userBoard);
+        createUndoControls();
+    }
+
+    /**
+     * Starts recording the game to the file the "record" parameter names, if there is one.
+     * @param boards the boards to record, top to bottom.
+     */
+    private void record(HanoiBoard... boards){
+        String file = getParameter("record");
+        if(file == null){
+            return;
+        }
+        BoardModel[] models = new BoardModel[boards.length];
+        for(int i = 0; i < boards.length; i++){
+            models[i] = boards[i].getModel();
+        }
+        try{
+            recorder = new GameRecorder(new File(file), models);
+        }
+        catch(IOException e){
+            System.err.println("The game couldn't be recorded: " + e);
+        }
+    }
+
+    /**
+     * Opens the recording the "replay" parameter names, lays out a board for every board in it
+     * (top to bottom, as they were recorded) and starts playing it.
+     */
+    private void createReplayBoard(){
+        isMenu = false;
+        isPlayerTurn = false;
+        bootstrap.none();
+        demoStatus = new GLabel("", width/2-60, 40);
+        demoStatus.setFont("Helvetica-18");
+        try{
+            replay = new GameReplay(new File(getParameter("replay")));
+            replay.seek(readParameter("from", 0, 0, Integer.MAX_VALUE));
+        }
+        catch(IOException e){
+            this.resize(width, HEIGHT + 20);
+            demoStatus.setLabel(replayFailed);
+            add(demoStatus);
+            return;
+        }
+        replaySpeed = readParameter("speed", 1, 1, 1000);
+        width = Math.max(WIDTH, HanoiBoard.widthFor(replay.getPegs()));
+        this.resize(width, HEIGHT * replay.getBoards() + 20);
+        for(int i = 0; i < replay.getBoards(); i++){
+            HanoiBoard board = new HanoiBoard(this, 200 + HEIGHT * i, replay.getDisks(), replay.getPegs());
+            board.animate(animator);
+            board.setAnimationTime((int) (Animator.DURATION / replaySpeed));
+            replay.attach(i, board.getModel());
+        }
+        demoStatus.setLocation(width/2-60, 40);
+        add(demoStatus);
+
+        replayTimer = new Timer(FRAME, new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                replayFrame();
+            }
+        });
+        replayTimer.setRepeats(false);
+        replayFrom = replay.getTime();
+        replayStarted = System.nanoTime();
+        replayFrame();
+    }
+
+    /**
+     * Plays the replay's moves that are due by now, then sets the timer for the next one.
+     */
+    private void replayFrame(){
+        double at = replayFrom + (System.nanoTime() - replayStarted) / 1e6 * replaySpeed; //Where the replay should be now.
+        try{
+            while(replay.hasNext() && replay.getTime() + replay.nextDelay() <= at){
+                replay.step();
+            }
+        }
+        catch(IOException e){
+            demoStatus.setLabel(replayFailed);
+            return;
+        }
+        demoStatus.setLabel("Move " + replay.getMoveIndex() + " of " + replay.getMoveCount() + " at " + speedName(replaySpeed));
+        if(replay.hasNext()){
+            double wait = (replay.getTime() + replay.nextDelay() - at) / replaySpeed;
+            replayTimer.setInitialDelay((int) Math.max(FRAME, Math.ceil(wait)));
+            replayTimer.restart();
+        }
+    }
+
+    /**
+     * Waits (without blocking) for the AI to be ready, then hands it over on the event thread.
+     * If it couldn't be made, the loading label says so instead.
+     * @param future the AI being made in the background.
+     * @param then what to do once the AI is set.
+     */
+    private void whenReady(CompletableFuture<AIPlayer> future, final Runnable then){
+        future.whenComplete(new BiConsumer<AIPlayer, Throwable>() {
+            public void accept(final AIPlayer player, final Throwable error) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if(error != null){
+                            loading.setLabel(loadingFailed);
+                            return;
+                        }
+                        AI = player;
+                        then.run();
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -316,7 +715,7 @@ public class HanoiMain extends GraphicsProgram {
 
             double labelWidth = win.getWidth();
 
-            win.setLocation(WIDTH/2-labelWidth/2, 40);
+            win.setLocation(width/2-labelWidth/2, 40);
             add(win);
             if(isVersus){
                 remove(versusTurn);
@@ -346,21 +745,4 @@ public class HanoiMain extends GraphicsProgram {
         }
     }
 
-
-    /**
-     * Converts an integer to the appropriate relevant stack.
-     */
-    private DiskStack intToStack(int num){
-        if(num == 0){
-            return AiBoard.getStack1();
-        }
-        if(num == 1){
-            return AiBoard.getStack2();
-        }
-        if(num == 2){
-            return AiBoard.getStack3();
-        }
-        return null;
-    }
-
 }
@@ -0,0 +1,176 @@
+package hanoi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays AIPlayer games on BoardModels, with no graphics, as fast as it can. Every move is checked
+ * against the rules and every game must end in a win, so this doubles as a test of the AI.
+ * Run with: games mode threads [disks pegs skill] (e.g. 1000000 demo 4, or 1000 demo 4 20 4).
+ * The mode is "demo" or "versus". With a skill (over 0.5 and up to 1, or the games may never end),
+ * the versus AI picks its moves as it goes (see SkillPolicy).
+ */
+public class HeadlessRunner {
+
+    private String mode; //"demo" or "versus".
+    private int threads; //The number of threads playing games.
+    private int disks; //The number of disks in every game.
+    private int pegs; //The number of pegs in every game.
+    private double skill = -1; //The versus AI's skill level, or -1 to play a whole solution.
+
+    /**
+     * Constructor for 3-disk 3-peg games.
+     * @param mode "demo" to play the best possible moves, "versus" to play the versus AI's moves.
+     * @param threads the number of threads playing games.
+     */
+    public HeadlessRunner(String mode, int threads) {
+        this(mode, threads, 3, 3);
+    }
+
+    /**
+     * Constructor
+     * @param mode "demo" to play the best possible moves, "versus" to play the versus AI's moves.
+     * @param threads the number of threads playing games.
+     * @param disks the number of disks in every game.
+     * @param pegs the number of pegs in every game.
+     */
+    public HeadlessRunner(String mode, int threads, int disks, int pegs) {
+        if(!mode.equals("demo") && !mode.equals("versus")){
+            throw new IllegalArgumentException("The mode must be demo or versus: " + mode);
+        }
+        this.mode = mode;
+        this.threads = Math.max(1, threads);
+        this.disks = disks;
+        this.pegs = pegs;
+    }
+
+    /**
+     * Sets the skill level of the versus AI (see SkillPolicy).
+     * @param skill the chance (0 to 1) of each move getting closer to the win, or -1 to play a whole solution.
+     */
+    public void setSkill(double skill){
+        this.skill = skill;
+    }
+
+    /**
+     * Plays games, split between the threads.
+     * @param games the number of games to play.
+     * @return the number of moves played in all games.
+     * @throws IllegalStateException if the AI made an illegal move or didn't win.
+     */
+    public long play(long games) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try{
+            List<Future<Long>> results = new ArrayList<>();
+            for(int i = 0; i < threads; i++){
+                final long share = games / threads + (i < games % threads ? 1 : 0);
+                results.add(executor.submit(new Callable<Long>() {
+                    public Long call() {
+                        return playGames(share);
+                    }
+                }));
+            }
+            long moves = 0;
+            for(Future<Long> result : results){
+                moves += result.get();
+            }
+            return moves;
+        }
+        catch(ExecutionException e){
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Plays games on one thread, reusing one board.
+     * @param games the number of games to play.
+     * @return the number of moves played.
+     */
+    private long playGames(long games){
+        BoardModel board = new BoardModel(disks, pegs);
+        long moves = 0;
+        for(long game = 0; game < games; game++){
+            board.reset();
+            moves += playGame(board);
+            if(!board.isWin()){
+                throw new IllegalStateException("Game " + game + " ended without a win.");
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Plays one game with a new AIPlayer.
+     * @param board the board to play on, in the starting state.
+     * @return the number of moves played.
+     */
+    private long playGame(BoardModel board){
+        long moves = 0;
+        if(mode.equals("demo")){
+            AIPlayer player = AIPlayer.forDemo(disks, pegs);
+            while(player.movesLeft()){
+                apply(board, player.getMove());
+                moves++;
+            }
+        }
+        else{
+            AIPlayer player = skill >= 0 ? AIPlayer.forVersus(disks, pegs, skill) : AIPlayer.forVersus(disks, pegs);
+            while(player.randMovesLeft()){
+                apply(board, player.getRandMove());
+                moves++;
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Makes a move on a board.
+     * @param board the board.
+     * @param move the move ('from' stack first, 'to' stack second).
+     * @throws IllegalStateException if the move is illegal.
+     */
+    private static void apply(BoardModel board, int[] move){
+        if(!board.move(move[0], move[1])){
+            throw new IllegalStateException("Illegal move: " + move[0] + " -> " + move[1]);
+        }
+    }
+
+    /**
+     * Plays games and prints how fast they were played.
+     * @param args optional: games mode threads disks pegs skill
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+        String mode = args.length > 1 ? args[1] : "demo";
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int disks = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int pegs = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+        double skill = args.length > 5 ? Double.parseDouble(args[5]) : -1;
+
+        HeadlessRunner runner = new HeadlessRunner(mode, threads, disks, pegs);
+        runner.setSkill(skill);
+        runner.play(Math.min(games, 10000)); //Warms up the JIT.
+
+        long start = System.nanoTime();
+        long moves = runner.play(games);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d %s games of %d disks on %d pegs (%d moves) on %d threads in %.3f s%n",
+                games, mode, disks, pegs, moves, threads, seconds);
+        System.out.printf("%.0f games/s, %.0f moves/s%n", games / seconds, moves / seconds);
+        if(Metrics.ENABLED){
+            System.out.print(Metrics.report());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package hanoi;
+
+/**
+ * The best next move from a position of a 3-peg game and how far the position is from the win,
+ * as worked out by HintOracle.
+ */
+public class Hint {
+
+    private int from; //The peg to move a disk from, or -1 if the game is already won.
+    private int to; //The peg to move the disk to, or -1 if the game is already won.
+    private int disk; //The disk that moves (0 is the smallest), or -1 if the game is already won.
+    private long distance; //The fewest moves left to win, as an unsigned number.
+
+    /**
+     * Constructor
+     * @param from the peg to move a disk from, or -1 if the game is already won.
+     * @param to the peg to move the disk to, or -1 if the game is already won.
+     * @param disk the disk that moves, or -1 if the game is already won.
+     * @param distance the fewest moves left to win, as an unsigned number.
+     */
+    public Hint(int from, int to, int disk, long distance) {
+        this.from = from;
+        this.to = to;
+        this.disk = disk;
+        this.distance = distance;
+    }
+
+    /**
+     * @return true if the game is already won (there's no move to make).
+     */
+    public boolean isSolved(){
+        return disk < 0;
+    }
+
+    /**
+     * Gets the move in the format HanoiMain reads.
+     * @return the move as an int array with the 'from' stack first and the 'to' stack second.
+     */
+    public int[] getMove(){
+        int[] move = new int[2];
+        move[0] = from;
+        move[1] = to;
+        return move;
+    }
+
+    /**
+     * Getter for from.
+     * @return the peg to move a disk from, or -1 if the game is already won.
+     */
+    public int getFrom() {
+        return from;
+    }
+
+    /**
+     * Getter for to.
+     * @return the peg to move the disk to, or -1 if the game is already won.
+     */
+    public int getTo() {
+        return to;
+    }
+
+    /**
+     * Getter for disk.
+     * @return the disk that moves (0 is the smallest), or -1 if the game is already won.
+     */
+    public int getDisk() {
+        return disk;
+    }
+
+    /**
+     * Getter for distance. With 64 disks the distance can be more than Long.MAX_VALUE, so it's
+     * unsigned: use Long.toUnsignedString or Long.compareUnsigned on it.
+     * @return the fewest moves left to win.
+     */
+    public long getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return the hint in words, e.g. "Move disk 1 from peg 1 to peg 3 (5 moves left)".
+     */
+    @Override
+    public String toString(){
+        if(isSolved()){
+            return "Solved";
+        }
+        return "Move disk " + (disk + 1) + " from peg " + (from + 1) + " to peg " + (to + 1)
+                + " (" + Long.toUnsignedString(distance) + " moves left)";
+    }
+}
@@ -0,0 +1,107 @@
+package hanoi;
+
+/**
+ * Finds the best next move from any legal position of a 3-peg game, and how many moves are left,
+ * without searching. Going from the largest disk down, every disk has a peg it has to end up on:
+ * the largest disk has to end on the goal peg. If a disk is already on its peg, the disks above
+ * it have to end on the same peg. If it isn't, it has to move there (once, 2^d moves into
+ * clearing the way for it), so the disks above it have to get out of the way onto the third peg.
+ * The fewest moves left is the sum of 2^d over the disks that aren't on their peg, and the best
+ * next move is to move the smallest of them, which nothing is blocking.
+ *
+ * That's one step per disk, so a hint takes well under a microsecond even with 64 disks (which
+ * is why a 64-disk game is given as an array of pegs: a packed GameState holds 32).
+ */
+public class HintOracle {
+
+    public static final int MAX_DISKS = 64; //The most disks a distance fits in (as an unsigned long).
+
+    /**
+     * Finds the best next move towards the last peg.
+     * @param state a state of a 3-peg game.
+     * @return the hint.
+     */
+    public static Hint hint(GameState state){
+        if(state.getPegs() != 3){
+            throw new IllegalArgumentException("Hints need a 3-peg game, not " + state.getPegs() + " pegs.");
+        }
+        int[] pegOf = new int[state.getDisks()];
+        for(int disk = 0; disk < pegOf.length; disk++){
+            pegOf[disk] = state.pegOf(disk);
+        }
+        return hint(pegOf, 2);
+    }
+
+    /**
+     * Finds the best next move towards the last peg.
+     * @param board a 3-peg board with up to 64 disks.
+     * @return the hint.
+     */
+    public static Hint hint(BoardModel board){
+        if(board.getPegs() != 3){
+            throw new IllegalArgumentException("Hints need a 3-peg game, not " + board.getPegs() + " pegs.");
+        }
+        int[] pegOf = new int[board.getDisks()];
+        for(int peg = 0; peg < 3; peg++){
+            for(int level = 0; level < board.height(peg); level++){
+                pegOf[board.diskAt(peg, level)] = peg;
+            }
+        }
+        return hint(pegOf, 2);
+    }
+
+    /**
+     * Finds the best next move towards a goal peg.
+     * @param pegOf pegOf[d] is the peg (0, 1 or 2) disk d is on (disk 0 is the smallest).
+     * @param goal the peg every disk has to end up on.
+     * @return the hint.
+     */
+    public static Hint hint(int[] pegOf, int goal){
+        if(pegOf.length < 1 || pegOf.length > MAX_DISKS){
+            throw new IllegalArgumentException("Hints need between 1 and " + MAX_DISKS + " disks: " + pegOf.length);
+        }
+        if(goal < 0 || goal > 2){
+            throw new IllegalArgumentException("The goal must be peg 0, 1 or 2: " + goal);
+        }
+        long distance = 0;
+        int target = goal; //The peg the disk being looked at has to end up on.
+        int disk = -1;
+        int from = -1;
+        int to = -1;
+        for(int d = pegOf.length - 1; d >= 0; d--){
+            int peg = pegOf[d];
+            if(peg < 0 || peg > 2){
+                throw new IllegalArgumentException("Disk " + d + " is on peg " + peg + ", not 0, 1 or 2.");
+            }
+            if(peg != target){
+                distance += 1L << d; //Wraps to an unsigned count for disk 63.
+                disk = d;
+                from = peg;
+                to = target;
+                target = 3 - peg - target; //The disks above get out of the way onto the third peg.
+            }
+        }
+        return new Hint(from, to, disk, distance);
+    }
+
+    /**
+     * Works out only the fewest moves left to win, without making a Hint.
+     * @param state a state of a 3-peg game.
+     * @return the fewest moves left to reach the last peg.
+     */
+    public static long distanceToGoal(GameState state){
+        if(state.getPegs() != 3){
+            throw new IllegalArgumentException("Hints need a 3-peg game, not " + state.getPegs() + " pegs.");
+        }
+        long distance = 0;
+        int target = 2;
+        for(int d = state.getDisks() - 1; d >= 0; d--){
+            int peg = state.pegOf(d);
+            if(peg != target){
+                distance += 1L << d;
+                target = 3 - peg - target;
+            }
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,207 @@
+package hanoi;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays versus matches against a GameServer from many connections at once, to see how many
+ * matches a second it can host and how long a move takes to come back. Each connection plays
+ * its matches one after another on its own thread, making the best moves (from AIPlayer.solve)
+ * and waiting for the server's answer to each before the next, and every answer is checked.
+ *
+ * Run with: connections matches [disks pegs port] (e.g. 64 100000 3 3). With no port (or port 0)
+ * a server is started in this program, with a worker for every processor.
+ */
+public class LoadGenerator {
+
+    private int port; //The server's port on localhost.
+    private int connections; //The number of connections playing at once.
+    private int disks; //The number of disks in every match.
+    private int pegs; //The number of pegs in every match.
+    private Metrics.Histogram roundTrips = new Metrics.Histogram(); //The time from sending each move until its answer came back.
+
+    /**
+     * Constructor
+     * @param port the server's port on localhost.
+     * @param connections the number of connections playing at once.
+     * @param disks the number of disks in every match.
+     * @param pegs the number of pegs in every match.
+     */
+    public LoadGenerator(int port, int connections, int disks, int pegs) {
+        this.port = port;
+        this.connections = Math.max(1, connections);
+        this.disks = disks;
+        this.pegs = pegs;
+    }
+
+    /**
+     * Plays matches, split between the connections.
+     * @param matches the number of matches to play.
+     * @return the number of moves the client made in all matches.
+     * @throws IOException if a connection failed.
+     * @throws IllegalStateException if the server answered wrongly.
+     */
+    public long play(long matches) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try{
+            List<Future<Long>> results = new ArrayList<>();
+            for(int i = 0; i < connections; i++){
+                final long share = matches / connections + (i < matches % connections ? 1 : 0);
+                results.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws IOException {
+                        return playMatches(share);
+                    }
+                }));
+            }
+            long moves = 0;
+            for(Future<Long> result : results){
+                moves += result.get();
+            }
+            return moves;
+        }
+        catch(ExecutionException e){
+            if(e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Plays matches on one connection.
+     * @param matches the number of matches to play.
+     * @return the number of moves the client made.
+     * @throws IOException if the connection failed.
+     */
+    private long playMatches(long matches) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(GameServer.FRAME);
+        MoveSource best = AIPlayer.solve(disks, pegs);
+        long moves = 0;
+        try(SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))){
+            channel.socket().setTcpNoDelay(true);
+            for(long match = 0; match < matches; match++){
+                send(channel, frame, GameServer.NEW, disks, pegs);
+                receive(channel, frame, GameServer.STARTED);
+                best.seek(0);
+                int status = GameServer.PLAYING;
+                while(status == GameServer.PLAYING){
+                    if(!best.hasNext()){
+                        throw new IllegalStateException("The match didn't end when the client won.");
+                    }
+                    int[] move = best.next();
+                    long sent = System.nanoTime();
+                    send(channel, frame, GameServer.MOVE, MoveRing.pack(move[0], move[1]) & 0xFF, 0);
+                    receive(channel, frame, GameServer.MOVED);
+                    roundTrips.recordSince(sent);
+                    status = frame.get(2);
+                    moves++;
+                }
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Sends a frame.
+     * @param channel the connection.
+     * @param frame a buffer for the frame.
+     * @param type the type.
+     * @param a the first byte after the type.
+     * @param b the second byte after the type.
+     * @throws IOException if the connection failed.
+     */
+    private static void send(SocketChannel channel, ByteBuffer frame, int type, int a, int b) throws IOException {
+        frame.clear();
+        frame.put((byte) type).put((byte) a).put((byte) b).flip();
+        while(frame.hasRemaining()){
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Reads a frame and checks its type.
+     * @param channel the connection.
+     * @param frame a buffer for the frame.
+     * @param type the type expected.
+     * @throws IOException if the connection failed.
+     * @throws IllegalStateException if the frame is of another type.
+     */
+    private static void receive(SocketChannel channel, ByteBuffer frame, int type) throws IOException {
+        frame.clear();
+        while(frame.hasRemaining()){
+            if(channel.read(frame) < 0){
+                throw new EOFException("The server closed the connection.");
+            }
+        }
+        int got = frame.get(0) & 0xFF;
+        if(got != type){
+            throw new IllegalStateException("Expected a frame of type " + type + ", got " + got + " (" + (frame.get(1) & 0xFF) + ")");
+        }
+    }
+
+    /**
+     * Getter for roundTrips.
+     * @return the time from sending each move until its answer came back.
+     */
+    public Metrics.Histogram getRoundTrips() {
+        return roundTrips;
+    }
+
+    /**
+     * Plays matches against a server and prints how fast they went.
+     * @param args optional: connections matches disks pegs port
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        long matches = args.length > 1 ? Long.parseLong(args[1]) : 100000;
+        int disks = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int pegs = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int port = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+
+        GameServer server = null;
+        if(port == 0){
+            server = new GameServer(0, Runtime.getRuntime().availableProcessors(), disks);
+            server.start();
+            port = server.getPort();
+        }
+        try{
+            LoadGenerator generator = new LoadGenerator(port, connections, disks, pegs);
+            generator.play(Math.min(matches, 10000)); //Warms up the JIT on both ends.
+            generator.getRoundTrips().reset();
+
+            long start = System.nanoTime();
+            long moves = generator.play(matches);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%d matches of %d disks on %d pegs (%d client moves) over %d connections in %.3f s%n",
+                    matches, disks, pegs, moves, connections, seconds);
+            System.out.printf("%.0f matches/s, %.0f moves/s%n", matches / seconds, moves / seconds);
+            System.out.println("Move round trip: " + generator.getRoundTrips());
+            if(Metrics.ENABLED){
+                System.out.print(Metrics.report());
+            }
+        }
+        finally{
+            if(server != null){
+                server.close();
+            }
+        }
+    }
+}
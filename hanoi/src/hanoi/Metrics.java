@@ -0,0 +1,310 @@
+package hanoi;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the solver, the game states and the GUI, shown through JMX
+ * (as hanoi:type=Metrics, e.g. in jconsole) and, every few seconds, printed to standard error.
+ *
+ * Off unless the program is run with -Dhanoi.metrics=true. Every place that records something
+ * checks ENABLED first, and since it's a constant the JIT drops the whole check (and the
+ * recording) when it's false, so metrics cost nothing when they're off. When they're on, counting
+ * and recording are lock free and safe from any thread. -Dhanoi.metrics.dump=N prints the report
+ * every N seconds (10 by default, 0 to never print it).
+ */
+public class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("hanoi.metrics"); //True to record metrics.
+    public static final String NAME = "hanoi:type=Metrics"; //The JMX name of the metrics.
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>(); //Every counter, by name.
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>(); //Every histogram, by name.
+
+    static {
+        if(ENABLED){
+            start();
+        }
+    }
+
+    /**
+     * Gets a counter, making it the first time its name is asked for. Keep it in a static final
+     * field rather than asking for it every time it's counted.
+     * @param name the name of the counter (e.g. "ai.enumeration.nodes").
+     * @return the counter.
+     */
+    public static Counter counter(String name){
+        Counter counter = counters.get(name);
+        if(counter == null){
+            counters.putIfAbsent(name, new Counter());
+            counter = counters.get(name);
+        }
+        return counter;
+    }
+
+    /**
+     * Gets a histogram of times, making it the first time its name is asked for. Keep it in a
+     * static final field rather than asking for it every time something is timed.
+     * @param name the name of the histogram (e.g. "ai.construct").
+     * @return the histogram.
+     */
+    public static Histogram histogram(String name){
+        Histogram histogram = histograms.get(name);
+        if(histogram == null){
+            histograms.putIfAbsent(name, new Histogram());
+            histogram = histograms.get(name);
+        }
+        return histogram;
+    }
+
+    /**
+     * Writes every counter and histogram, one per line, sorted by name.
+     * @return the report.
+     */
+    public static String report(){
+        StringBuilder report = new StringBuilder();
+        for(Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()){
+            report.append(entry.getKey()).append(' ').append(entry.getValue().get()).append('\n');
+        }
+        for(Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()){
+            report.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Sets every counter and histogram back to zero.
+     */
+    public static void reset(){
+        for(Counter counter : counters.values()){
+            counter.reset();
+        }
+        for(Histogram histogram : histograms.values()){
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Registers the metrics with JMX and starts printing the report, if asked to.
+     */
+    private static void start(){
+        try{
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(NAME));
+        }
+        catch(Exception e){
+            System.err.println("Metrics couldn't be registered with JMX: " + e);
+        }
+
+        long seconds = Long.getLong("hanoi.metrics.dump", 10);
+        if(seconds > 0){
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "hanoi-metrics");
+                    thread.setDaemon(true); //Doesn't keep the program running.
+                    return thread;
+                }
+            });
+            dumper.scheduleAtFixedRate(new Runnable() {
+                public void run() {
+                    System.err.print("---- metrics ----\n" + report());
+                }
+            }, seconds, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * A count that only goes up (e.g. the number of states searched).
+     */
+    public static class Counter {
+
+        private LongAdder count = new LongAdder(); //The count, split between threads so they don't fight over it.
+
+        /**
+         * Adds one to the count.
+         */
+        public void increment(){
+            count.increment();
+        }
+
+        /**
+         * Adds to the count.
+         * @param n how much to add.
+         */
+        public void add(long n){
+            count.add(n);
+        }
+
+        /**
+         * @return the count.
+         */
+        public long get(){
+            return count.sum();
+        }
+
+        /**
+         * Sets the count back to zero.
+         */
+        public void reset(){
+            count.reset();
+        }
+    }
+
+    /**
+     * How long something took, every time it was timed: how many times, the total, the longest and
+     * the percentiles. Times are kept in buckets that double in size (bucket b holds times from
+     * 2^b to 2^(b+1) - 1 nanoseconds), so percentiles are accurate to within a factor of two.
+     */
+    public static class Histogram {
+
+        private AtomicLongArray buckets = new AtomicLongArray(64); //buckets[b] counts the times with b + 1 significant bits.
+        private LongAdder total = new LongAdder(); //The sum of the times, in nanoseconds.
+        private AtomicLong max = new AtomicLong(); //The longest time, in nanoseconds.
+
+        /**
+         * Records a time.
+         * @param nanos the time in nanoseconds.
+         */
+        public void record(long nanos){
+            nanos = Math.max(0, nanos);
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+            total.add(nanos);
+            long longest = max.get();
+            while(nanos > longest && !max.compareAndSet(longest, nanos)){
+                longest = max.get();
+            }
+        }
+
+        /**
+         * Records the time since something started.
+         * @param start when it started (from System.nanoTime()).
+         */
+        public void recordSince(long start){
+            record(System.nanoTime() - start);
+        }
+
+        /**
+         * @return the number of times recorded.
+         */
+        public long getCount(){
+            long count = 0;
+            for(int b = 0; b < buckets.length(); b++){
+                count += buckets.get(b);
+            }
+            return count;
+        }
+
+        /**
+         * @return the average time in nanoseconds (0 if nothing was recorded).
+         */
+        public double getMean(){
+            long count = getCount();
+            return count == 0 ? 0 : (double) total.sum() / count;
+        }
+
+        /**
+         * @return the longest time in nanoseconds.
+         */
+        public long getMax(){
+            return max.get();
+        }
+
+        /**
+         * Works out a time that a fraction of the recorded times are no longer than.
+         * @param fraction the fraction (e.g. 0.99 for the 99th percentile).
+         * @return the time in nanoseconds (the top of its bucket, and never more than the longest).
+         */
+        public long percentile(double fraction){
+            long count = getCount();
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for(int b = 0; b < buckets.length(); b++){
+                seen += buckets.get(b);
+                if(seen >= rank && seen > 0){
+                    return Math.min(b == 63 ? Long.MAX_VALUE : (2L << b) - 1, getMax());
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Sets the histogram back to empty.
+         */
+        public void reset(){
+            for(int b = 0; b < buckets.length(); b++){
+                buckets.set(b, 0);
+            }
+            total.reset();
+            max.set(0);
+        }
+
+        /**
+         * @return e.g. "count=12 mean=1.532ms p50=1.049ms p99=4.194ms max=3.871ms".
+         */
+        @Override
+        public String toString(){
+            return "count=" + getCount() + " mean=" + millis(getMean()) + " p50=" + millis(percentile(0.5))
+                    + " p99=" + millis(percentile(0.99)) + " max=" + millis(getMax());
+        }
+
+        /**
+         * Writes a time in milliseconds.
+         * @param nanos the time in nanoseconds.
+         * @return e.g. "1.532ms".
+         */
+        private static String millis(double nanos){
+            return String.format("%.3fms", nanos / 1e6);
+        }
+    }
+
+    /**
+     * What JMX sees of the metrics.
+     */
+    private static class Bean implements MetricsMXBean {
+
+        /**
+         * @return every counter, by name.
+         */
+        public Map<String, Long> getCounters(){
+            Map<String, Long> values = new TreeMap<>();
+            for(Map.Entry<String, Counter> entry : counters.entrySet()){
+                values.put(entry.getKey(), entry.getValue().get());
+            }
+            return values;
+        }
+
+        /**
+         * @return every histogram, by name, as its toString().
+         */
+        public Map<String, String> getHistograms(){
+            Map<String, String> values = new TreeMap<>();
+            for(Map.Entry<String, Histogram> entry : histograms.entrySet()){
+                values.put(entry.getKey(), entry.getValue().toString());
+            }
+            return values;
+        }
+
+        /**
+         * @return the same report that's printed.
+         */
+        public String getReport(){
+            return report();
+        }
+
+        /**
+         * Sets every metric back to zero.
+         */
+        public void reset(){
+            Metrics.reset();
+        }
+    }
+}
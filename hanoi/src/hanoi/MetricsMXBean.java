@@ -0,0 +1,29 @@
+package hanoi;
+
+import java.util.Map;
+
+/**
+ * The metrics as JMX shows them (registered as Metrics.NAME when metrics are on).
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return every counter, by name.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return every histogram of times, by name, e.g. "count=12 mean=1.532ms p50=1.049ms p99=4.194ms max=3.871ms".
+     */
+    Map<String, String> getHistograms();
+
+    /**
+     * @return every counter and histogram, one per line.
+     */
+    String getReport();
+
+    /**
+     * Sets every counter and histogram back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,128 @@
+package hanoi;
+
+import java.util.ArrayList;
+
+/**
+ * The moves made on a board, for undo and redo: one byte per move (packed as in MoveRing), so
+ * the log takes the same memory per move however many disks the board has. A move is undone by
+ * making the opposite move, so no boards are kept.
+ *
+ * The bytes are kept in pages of PAGE moves, added one at a time as the log grows, so it never
+ * copies the moves already in it and never holds more than one page it isn't using. Moves undone
+ * stay in the log until a new move is made, so they can be redone.
+ */
+public class MoveLog {
+
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE = 1 << PAGE_BITS; //The number of moves in a page.
+
+    private ArrayList<byte[]> pages = new ArrayList<>(); //The moves, PAGE to a page.
+    private long size; //The number of moves in the log, including ones undone.
+    private long position; //The number of moves done (the rest have been undone).
+
+    /**
+     * Adds a move that was just made, dropping any moves undone before it.
+     * @param from the 'from' stack.
+     * @param to the 'to' stack.
+     */
+    public void add(int from, int to){
+        int page = (int) (position >>> PAGE_BITS);
+        if(page == pages.size()){
+            pages.add(new byte[PAGE]);
+        }
+        pages.get(page)[(int) (position & (PAGE - 1))] = MoveRing.pack(from, to);
+        position++;
+        size = position;
+        trim();
+    }
+
+    /**
+     * Takes back the last move done. Make the opposite move (from its 'to' stack to its 'from' stack) to undo it.
+     * @return the packed move that was taken back (read it with MoveRing.from and to), or -1 if there's nothing to undo.
+     */
+    public int undo(){
+        if(position == 0){
+            return -1;
+        }
+        position--;
+        return get(position);
+    }
+
+    /**
+     * Does again the last move undone. Make the move to redo it.
+     * @return the packed move, or -1 if there's nothing to redo.
+     */
+    public int redo(){
+        if(position == size){
+            return -1;
+        }
+        return get(position++);
+    }
+
+    /**
+     * @return true if there's a move to undo.
+     */
+    public boolean canUndo(){
+        return position > 0;
+    }
+
+    /**
+     * @return true if there's a move to redo.
+     */
+    public boolean canRedo(){
+        return position < size;
+    }
+
+    /**
+     * Getter for position.
+     * @return the number of moves done (not undone).
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Getter for size.
+     * @return the number of moves in the log, including ones undone.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Empties the log.
+     */
+    public void clear(){
+        size = 0;
+        position = 0;
+        trim();
+    }
+
+    /**
+     * Works out how much memory the log takes.
+     * @return the size in bytes.
+     */
+    public long memoryUsed(){
+        return (long) pages.size() * PAGE;
+    }
+
+    /**
+     * Gets a move.
+     * @param index which move (0 is the first).
+     * @return the packed move.
+     */
+    private int get(long index){
+        return pages.get((int) (index >>> PAGE_BITS))[(int) (index & (PAGE - 1))] & 0xFF;
+    }
+
+    /**
+     * Drops the pages past the one the log ends in, keeping one spare so a log moving back and
+     * forth over the end of a page doesn't keep making pages.
+     */
+    private void trim(){
+        long needed = (size >>> PAGE_BITS) + 2;
+        while(pages.size() > needed){
+            pages.remove(pages.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package hanoi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A first in, first out queue of moves, one byte per move with the 'from' stack in the high 4
+ * bits and the 'to' stack in the low 4 (the same packing as the solver file). The bytes are kept
+ * in a ring that is reused from game to game, so adding and taking moves never allocates
+ * (the ring only grows when more moves are queued at once than it has ever held). It never holds
+ * more than MAX_CAPACITY moves: a whole solution of a big game doesn't belong in a queue, play it
+ * from a MoveSource instead.
+ */
+public class MoveRing {
+
+    public static final int MAX_CAPACITY = 1 << 20; //The most moves a ring holds.
+
+    private byte[] moves; //The ring. Its length is always a power of two.
+    private int head; //How many moves have ever been taken (the next move is at head & mask).
+    private int tail; //How many moves have ever been added.
+
+    /**
+     * Constructor
+     * @param capacity the number of moves to make room for. The ring grows if needed.
+     * @throws IllegalStateException if capacity is more than MAX_CAPACITY.
+     */
+    public MoveRing(int capacity) {
+        checkCapacity(capacity);
+        moves = new byte[Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1)]; //Rounded up to a power of two.
+    }
+
+    /**
+     * Packs a move into a byte.
+     * @param from the 'from' stack (0 to 15).
+     * @param to the 'to' stack (0 to 15).
+     * @return the packed move.
+     */
+    public static byte pack(int from, int to){
+        return (byte) (from << 4 | to);
+    }
+
+    /**
+     * Gets the 'from' stack of a packed move.
+     * @param move the packed move.
+     * @return the 'from' stack.
+     */
+    public static int from(int move){
+        return (move >> 4) & 0xF;
+    }
+
+    /**
+     * Gets the 'to' stack of a packed move.
+     * @param move the packed move.
+     * @return the 'to' stack.
+     */
+    public static int to(int move){
+        return move & 0xF;
+    }
+
+    /**
+     * Adds a move to the back of the queue.
+     * @param from the 'from' stack.
+     * @param to the 'to' stack.
+     */
+    public void add(int from, int to){
+        add(pack(from, to));
+    }
+
+    /**
+     * Adds a packed move to the back of the queue.
+     * @param move the packed move.
+     * @throws IllegalStateException if the ring already holds MAX_CAPACITY moves.
+     */
+    public void add(byte move){
+        if(tail - head == moves.length){
+            checkCapacity(moves.length + 1L);
+            grow(moves.length * 2);
+        }
+        moves[tail & (moves.length - 1)] = move;
+        tail++;
+    }
+
+    /**
+     * Adds every move left in a buffer of packed moves (e.g. a solver file sample).
+     * @param buffer the moves. Its position is moved to its limit.
+     * @throws IllegalStateException if the ring would hold more than MAX_CAPACITY moves (nothing is added).
+     */
+    public void addAll(ByteBuffer buffer){
+        int count = buffer.remaining();
+        long needed = (long) (tail - head) + count;
+        if(needed > moves.length){
+            checkCapacity(needed);
+            grow(Integer.highestOneBit((int) needed * 2 - 1));
+        }
+        while(buffer.hasRemaining()){
+            moves[tail & (moves.length - 1)] = buffer.get();
+            tail++;
+        }
+    }
+
+    /**
+     * Takes the move at the front of the queue.
+     * @return the packed move (read it with from and to), or -1 if the queue is empty.
+     */
+    public int poll(){
+        if(head == tail){
+            return -1;
+        }
+        int move = moves[head & (moves.length - 1)] & 0xFF;
+        head++;
+        return move;
+    }
+
+    /**
+     * Looks at the move at the front of the queue without taking it.
+     * @return the packed move, or -1 if the queue is empty.
+     */
+    public int peek(){
+        if(head == tail){
+            return -1;
+        }
+        return moves[head & (moves.length - 1)] & 0xFF;
+    }
+
+    /**
+     * @return the number of moves in the queue.
+     */
+    public int size(){
+        return tail - head;
+    }
+
+    /**
+     * @return true if there are no moves in the queue.
+     */
+    public boolean isEmpty(){
+        return head == tail;
+    }
+
+    /**
+     * Empties the queue, keeping the ring for the next game.
+     */
+    public void clear(){
+        head = 0;
+        tail = 0;
+    }
+
+    /**
+     * Checks that a ring may hold a number of moves.
+     * @param capacity the number of moves.
+     * @throws IllegalStateException if it's more than MAX_CAPACITY.
+     */
+    private static void checkCapacity(long capacity){
+        if(capacity > MAX_CAPACITY){
+            throw new IllegalStateException("A MoveRing holds at most " + MAX_CAPACITY + " moves, not " + capacity);
+        }
+    }
+
+    /**
+     * Makes the ring bigger, keeping the moves in order.
+     * @param capacity the new length (a power of two).
+     */
+    private void grow(int capacity){
+        byte[] bigger = new byte[capacity];
+        int size = tail - head;
+        for(int i = 0; i < size; i++){
+            bigger[i] = moves[(head + i) & (moves.length - 1)];
+        }
+        moves = bigger;
+        head = 0;
+        tail = size;
+    }
+}
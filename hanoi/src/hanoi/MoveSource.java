@@ -0,0 +1,67 @@
+package hanoi;
+
+/**
+ * A solution to a Hanoi game that hands out its moves one at a time, and can also work out any
+ * move, or the board after any number of moves, without playing through the ones before it.
+ * OptimalMoves is the solution for three pegs, FrameStewartSolver for any number of pegs.
+ */
+public interface MoveSource {
+
+    /**
+     * Works out a move of the solution.
+     * @param k the index of the move (0 is the first move).
+     * @return the move as an int array with the 'from' stack first and the 'to' stack second.
+     */
+    int[] moveAt(long k);
+
+    /**
+     * Works out the state of the board after some number of moves of the solution.
+     * @param k the number of moves already done (0 is the starting state, size() is the win).
+     * @return the state of the board after k moves.
+     */
+    GameState stateAt(long k);
+
+    /**
+     * Gets the next move and moves the cursor past it.
+     * @return the next move.
+     */
+    int[] next();
+
+    /**
+     * @return true if there are moves left after the cursor, false if not.
+     */
+    boolean hasNext();
+
+    /**
+     * Moves the cursor so that the next move handed out is move k.
+     * @param k the index of the next move (size() means there are no moves left).
+     */
+    void seek(long k);
+
+    /**
+     * @return the index of the next move to be handed out.
+     */
+    long position();
+
+    /**
+     * @return the number of moves in the solution.
+     */
+    long size();
+
+    /**
+     * Makes another cursor over the same solution, sharing whatever this one has worked out, so
+     * it's cheap. Its cursor starts at move 0 and moves on its own.
+     * @return the new cursor.
+     */
+    MoveSource cursor();
+
+    /**
+     * @return the number of disks being moved.
+     */
+    int getDisks();
+
+    /**
+     * @return the number of pegs in the game.
+     */
+    int getPegs();
+}
@@ -0,0 +1,337 @@
+package hanoi;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks a move file (one packed byte per move, the 'from' peg in the high 4 bits and the 'to'
+ * peg in the low 4, as in MoveRing) against the rules, move by move with GameState.canMove and
+ * moveDisk, and finds the first illegal move. Files of 2^30 moves and more are split into chunks
+ * checked in parallel on a ForkJoinPool, each read from the file in small blocks, so the moves
+ * are never all in memory.
+ *
+ * A chunk can only be checked once the board at its start is known. Instead of playing every
+ * move before it, that board is taken straight from the best solution (MoveSource.stateAt), which
+ * is what a recorded or generated solution almost always is. Once the chunks are done they're
+ * stitched together in order: if a chunk doesn't end on the board the next chunk was started
+ * from (the moves left the best solution), the next chunk is checked again from where it really
+ * starts. So the answer is always the same as playing the moves one by one, and it's only as slow
+ * as that from the point where the moves leave the best solution.
+ *
+ * Run with: file disks pegs [threads chunkMoves], or write file disks pegs to make the file of the
+ * best solution.
+ */
+public class MoveVerifier {
+
+    public static final long CHUNK_MOVES = 1 << 22; //The default number of moves in a chunk.
+    private static final int BLOCK = 1 << 16; //The number of moves read from the file at once.
+
+    private File file; //The move file.
+    private int disks; //The number of disks in the game.
+    private int pegs; //The number of pegs in the game.
+    private long chunkMoves; //The number of moves in every chunk (but the last).
+
+    /**
+     * Constructor
+     * @param file the move file.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @param chunkMoves the number of moves in every chunk.
+     */
+    public MoveVerifier(File file, int disks, int pegs, long chunkMoves) {
+        if(disks < 1 || disks > GameState.maxDisks(pegs)){
+            throw new IllegalArgumentException("Moves can only be checked for 1 to " + GameState.maxDisks(pegs)
+                    + " disks on " + pegs + " pegs: " + disks);
+        }
+        if(chunkMoves < 1){
+            throw new IllegalArgumentException("Chunks need at least one move: " + chunkMoves);
+        }
+        this.file = file;
+        this.disks = disks;
+        this.pegs = pegs;
+        this.chunkMoves = chunkMoves;
+    }
+
+    /**
+     * Checks every move in the file.
+     * @param pool the pool to check the chunks on.
+     * @return what was found.
+     * @throws IOException if the file couldn't be read.
+     */
+    public Result verify(ForkJoinPool pool) throws IOException {
+        try(RandomAccessFile input = new RandomAccessFile(file, "r");
+            FileChannel channel = input.getChannel()){
+            long moves = channel.size();
+            Chunk[] chunks = new Chunk[(int) Math.max(1, (moves + chunkMoves - 1) / chunkMoves)];
+            MoveSource best = AIPlayer.solve(disks, pegs);
+            for(int c = 0; c < chunks.length; c++){
+                long first = c * chunkMoves;
+                GameState start = first <= best.size() ? best.stateAt(first) : null; //Past the best solution there's nothing to guess from.
+                chunks[c] = new Chunk(channel, first, Math.min(moves, first + chunkMoves), start);
+            }
+
+            try{
+                pool.invoke(new SplitTask(chunks, 0, chunks.length));
+            }
+            catch(UncheckedIOException e){
+                throw e.getCause();
+            }
+
+            GameState board = GameState.start(disks, pegs);
+            int rechecked = 0;
+            for(Chunk chunk : chunks){
+                if(chunk.start == null || !chunk.start.equals(board)){ //It was checked from the wrong board.
+                    chunk.start = board;
+                    chunk.check();
+                    rechecked++;
+                }
+                if(chunk.illegal >= 0){
+                    return new Result(moves, chunk.illegal, chunk.end, chunks.length, rechecked);
+                }
+                board = chunk.end;
+            }
+            return new Result(moves, -1, board, chunks.length, rechecked);
+        }
+    }
+
+    /**
+     * Writes the best solution of a game as a move file (e.g. to check it).
+     * @param moves the solution.
+     * @param file the file to write.
+     * @throws IOException if the file couldn't be written.
+     */
+    public static void write(MoveSource moves, File file) throws IOException {
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BLOCK)){
+            moves.seek(0);
+            while(moves.hasNext()){
+                int[] move = moves.next();
+                out.write(MoveRing.pack(move[0], move[1]));
+            }
+        }
+    }
+
+    /**
+     * Splits the chunks in half until there is only one, so idle threads can steal work.
+     */
+    private static class SplitTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private Chunk[] chunks; //Every chunk.
+        private int low; //The first chunk in this half.
+        private int high; //One past the last chunk in this half.
+
+        /**
+         * Constructor
+         * @param chunks every chunk.
+         * @param low the first chunk in this half.
+         * @param high one past the last chunk in this half.
+         */
+        SplitTask(Chunk[] chunks, int low, int high) {
+            this.chunks = chunks;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected void compute(){
+            if(high - low == 1){
+                if(chunks[low].start != null){
+                    try{
+                        chunks[low].check();
+                    }
+                    catch(IOException e){
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+            else if(high - low > 1){
+                int middle = (low + high) >>> 1;
+                invokeAll(new SplitTask(chunks, low, middle), new SplitTask(chunks, middle, high));
+            }
+        }
+    }
+
+    /**
+     * A run of moves in the file, checked from a board.
+     */
+    private static class Chunk {
+
+        private FileChannel channel; //The file (shared by every chunk, read at absolute positions).
+        private long first; //The index of the first move.
+        private long last; //One past the index of the last move.
+        private GameState start; //The board the moves are checked from (null if not known yet).
+        private GameState end; //The board after the moves (or just before the illegal one).
+        private long illegal = -1; //The index of the first illegal move, or -1.
+
+        /**
+         * Constructor
+         * @param channel the file.
+         * @param first the index of the first move.
+         * @param last one past the index of the last move.
+         * @param start the board to check the moves from, or null if it isn't known yet.
+         */
+        Chunk(FileChannel channel, long first, long last, GameState start) {
+            this.channel = channel;
+            this.first = first;
+            this.last = last;
+            this.start = start;
+        }
+
+        /**
+         * Plays the moves from the start board, stopping at the first illegal one.
+         * @throws IOException if the file couldn't be read.
+         */
+        void check() throws IOException {
+            GameState board = start.copy();
+            illegal = -1;
+            ByteBuffer block = ByteBuffer.allocate(BLOCK);
+            long index = first;
+            while(index < last){
+                block.clear();
+                block.limit((int) Math.min(BLOCK, last - index));
+                while(block.hasRemaining()){
+                    if(channel.read(block, index + block.position()) < 0){
+                        throw new EOFException("The move file ended at move " + (index + block.position()));
+                    }
+                }
+                block.flip();
+                while(block.hasRemaining()){
+                    int move = block.get();
+                    int from = MoveRing.from(move) + 1;
+                    int to = MoveRing.to(move) + 1;
+                    if(!board.canMove(from, to)){
+                        illegal = index;
+                        end = board;
+                        return;
+                    }
+                    board.moveDisk(from, to);
+                    index++;
+                }
+            }
+            end = board;
+        }
+    }
+
+    /**
+     * What checking a move file found.
+     */
+    public static class Result {
+
+        private long moves; //The number of moves in the file.
+        private long illegal; //The index of the first illegal move, or -1 if every move is legal.
+        private GameState board; //The board after the last legal move.
+        private int chunks; //The number of chunks the moves were split into.
+        private int rechecked; //The number of chunks checked again because their start board was guessed wrong.
+
+        /**
+         * Constructor
+         * @param moves the number of moves in the file.
+         * @param illegal the index of the first illegal move, or -1.
+         * @param board the board after the last legal move.
+         * @param chunks the number of chunks.
+         * @param rechecked the number of chunks checked again.
+         */
+        Result(long moves, long illegal, GameState board, int chunks, int rechecked) {
+            this.moves = moves;
+            this.illegal = illegal;
+            this.board = board;
+            this.chunks = chunks;
+            this.rechecked = rechecked;
+        }
+
+        /**
+         * @return true if every move is legal and the game ends won.
+         */
+        public boolean isSolution(){
+            return illegal < 0 && board.isWin();
+        }
+
+        /**
+         * Getter for moves.
+         * @return the number of moves in the file.
+         */
+        public long getMoves() {
+            return moves;
+        }
+
+        /**
+         * Getter for illegal.
+         * @return the index of the first illegal move (0 is the first move), or -1 if every move is legal.
+         */
+        public long getIllegal() {
+            return illegal;
+        }
+
+        /**
+         * Getter for board.
+         * @return the board after the last legal move.
+         */
+        public GameState getBoard() {
+            return board;
+        }
+
+        /**
+         * Getter for chunks.
+         * @return the number of chunks the moves were split into.
+         */
+        public int getChunks() {
+            return chunks;
+        }
+
+        /**
+         * Getter for rechecked.
+         * @return the number of chunks checked again because the moves before them left the best solution.
+         */
+        public int getRechecked() {
+            return rechecked;
+        }
+
+        /**
+         * @return e.g. "1073741823 moves, all legal, solved (256 chunks, 0 checked again)".
+         */
+        @Override
+        public String toString(){
+            String found = illegal < 0 ? "all legal, " + (board.isWin() ? "solved" : "not solved")
+                    : "move " + illegal + " is illegal";
+            return moves + " moves, " + found + " (" + chunks + " chunks, " + rechecked + " checked again)";
+        }
+    }
+
+    /**
+     * Checks a move file and prints what was found and how fast, or writes the file of a best solution.
+     * @param args file disks pegs [threads chunkMoves], or write file disks pegs
+     */
+    public static void main(String[] args) throws IOException {
+        boolean write = args.length > 0 && args[0].equals("write");
+        int at = write ? 1 : 0;
+        File file = new File(args.length > at ? args[at] : "moves.bin");
+        int disks = args.length > at + 1 ? Integer.parseInt(args[at + 1]) : 20;
+        int pegs = args.length > at + 2 ? Integer.parseInt(args[at + 2]) : 3;
+        if(write){
+            write(AIPlayer.solve(disks, pegs), file);
+            System.out.println("Wrote " + file.length() + " moves to " + file);
+            return;
+        }
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long chunkMoves = args.length > 4 ? Long.parseLong(args[4]) : CHUNK_MOVES;
+
+        MoveVerifier verifier = new MoveVerifier(file, disks, pegs, chunkMoves);
+        long start = System.nanoTime();
+        Result result = verifier.verify(new ForkJoinPool(threads));
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(result);
+        System.out.printf("Checked on %d threads in %.3f s (%.0f moves/s)%n", threads, seconds, result.getMoves() / seconds);
+    }
+}
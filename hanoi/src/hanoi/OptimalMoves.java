@@ -0,0 +1,172 @@
+package hanoi;
+
+/**
+ * The best possible list of moves for moving every disk from the first peg to the third peg.
+ * Moves are never stored: move k is worked out straight from the bits of k, so any number of
+ * disks (up to GameState.MAX_DISKS) only takes a handful of longs of memory.
+ */
+public class OptimalMoves implements MoveSource {
+
+    private int disks; //The number of disks being moved.
+    private long size; //The number of moves in the solution (2^disks - 1).
+    private long next; //The index of the next move handed out by next().
+
+    /**
+     * Constructor
+     * @param disks the number of disks to be moved.
+     */
+    public OptimalMoves(int disks) {
+        if(disks < 1 || disks > GameState.MAX_DISKS){
+            throw new IllegalArgumentException("Disks must be between 1 and " + GameState.MAX_DISKS + ": " + disks);
+        }
+        this.disks = disks;
+        this.size = (1L << disks) - 1;
+    }
+
+    /**
+     * Works out a move of the solution. The m-th move (counting from 1) moves a disk from peg
+     * (m & (m-1)) % 3 to peg ((m | (m-1)) + 1) % 3, which ends on the third peg for an odd number
+     * of disks. For an even number of disks the second and third pegs are swapped.
+     * @param k the index of the move (0 is the first move).
+     * @return the move as an int array with the 'from' stack first and the 'to' stack second.
+     */
+    public int[] moveAt(long k){
+        checkIndex(k, size - 1);
+        long m = k + 1;
+        int[] fromTo = new int[2];
+        fromTo[0] = orient((int) ((m & (m - 1)) % 3));
+        fromTo[1] = orient((int) (((m | (m - 1)) + 1) % 3));
+        return fromTo;
+    }
+
+    /**
+     * Works out which disk a move of the solution picks up.
+     * @param k the index of the move (0 is the first move).
+     * @return the disk moved (0 is the smallest).
+     */
+    public int diskAt(long k){
+        checkIndex(k, size - 1);
+        return Long.numberOfTrailingZeros(k + 1);
+    }
+
+    /**
+     * Works out the state of the board after some number of moves of the solution without
+     * playing through them, by deciding where each disk is from the largest down.
+     * @param k the number of moves already done (0 is the starting state, size() is the win).
+     * @return the state of the board after k moves.
+     */
+    public GameState stateAt(long k){
+        checkIndex(k, size);
+        long state = 0;
+        int from = 0;
+        int to = 2;
+        int spare = 1;
+
+        for(int disk = disks - 1; disk >= 0; disk--){
+            long half = 1L << disk; //Moves needed to get the disks above this one out of the way, plus one.
+
+            if(k < half){ //This disk hasn't moved yet, the ones above it are heading for the spare stack.
+                state |= (long) from << (2 * disk);
+                int temp = to;
+                to = spare;
+                spare = temp;
+            }
+            else{ //This disk is already on its 'to' stack, the ones above it are coming back on top.
+                state |= (long) to << (2 * disk);
+                k -= half;
+                int temp = from;
+                from = spare;
+                spare = temp;
+            }
+        }
+        return new GameState(state, disks);
+    }
+
+    /**
+     * Gets the next move and moves the cursor past it.
+     * @return the next move.
+     */
+    public int[] next(){
+        int[] move = moveAt(next);
+        next++;
+        return move;
+    }
+
+    /**
+     * @return true if there are moves left after the cursor, false if not.
+     */
+    public boolean hasNext(){
+        return next < size;
+    }
+
+    /**
+     * Moves the cursor so that the next move handed out is move k.
+     * @param k the index of the next move (size() means there are no moves left).
+     */
+    public void seek(long k){
+        checkIndex(k, size);
+        next = k;
+    }
+
+    /**
+     * Getter for the cursor.
+     * @return the index of the next move to be handed out.
+     */
+    public long position() {
+        return next;
+    }
+
+    /**
+     * Getter for size.
+     * @return the number of moves in the solution.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return another cursor over the solution, at move 0.
+     */
+    public MoveSource cursor(){
+        return new OptimalMoves(disks);
+    }
+
+    /**
+     * Getter for disks.
+     * @return disks
+     */
+    public int getDisks() {
+        return disks;
+    }
+
+    /**
+     * @return 3, the only number of pegs this solution works for.
+     */
+    public int getPegs() {
+        return 3;
+    }
+
+    /**
+     * Swaps the second and third stacks when the number of disks is even, since the bit formula
+     * only ends on the third stack for an odd number of disks.
+     * @param stack the stack given by the bit formula.
+     * @return the stack in this solution.
+     */
+    private int orient(int stack){
+        if(disks % 2 == 0 && stack != 0){
+            return 3 - stack;
+        }
+        return stack;
+    }
+
+    /**
+     * Makes sure an index is inside the solution.
+     * @param k the index.
+     * @param max the largest allowed index.
+     */
+    private void checkIndex(long k, long max){
+        if(k < 0 || k > max){
+            throw new IndexOutOfBoundsException("Index " + k + " is outside 0.." + max);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package hanoi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds ways to complete a Hanoi game in under a given number of moves on several threads.
+ * Works like SolutionSet.search (a depth first search that never goes back to a
+ * state it has already been through), but the first few moves are split into separate tasks
+ * on a ForkJoinPool. Every task keeps its own list of solutions, and the lists are joined in
+ * the order the serial search would have found them.
+ *
+ * The search stops once enough solutions are found. Which solutions are kept never depends on
+ * the threads: the result is always the first solutions in search order. Without a seed the
+ * search order is the serial one (so the result matches SolutionSet.search), and with a seed
+ * the moves tried at every state are shuffled in a way that only depends on the seed.
+ */
+public class ParallelEnumerator {
+
+    private static final int[] FROM = {1, 1, 2, 2, 3, 3}; //The 'from' stack of each of the six possible moves, in search order.
+    private static final int[] TO = {2, 3, 1, 3, 1, 2}; //The 'to' stack of each of the six possible moves, in search order.
+    private static final Metrics.Counter NODES = Metrics.counter("enumeration.parallel.nodes"); //Counts search calls.
+
+    private int disks; //The number of disks in the game.
+    private int maxMoves; //Solutions must take fewer moves than this.
+    private int limit; //The number of solutions wanted.
+    private int splitDepth; //The number of moves that are split into separate tasks.
+    private boolean seeded; //Whether the move order is shuffled.
+    private long seed; //The seed for shuffling the move order.
+
+    private List<Leaf> leaves; //The tasks, in search order.
+    private List<ArrayList<ArrayList<GameState>>> results; //The solutions found by each task, null until it finishes.
+    private int finished; //The number of tasks at the front of leaves that have finished.
+    private int found; //The number of solutions found by those finished tasks.
+    private volatile int cutoff; //Tasks after this one are not needed anymore (the global stop condition).
+    private final Object lock = new Object(); //Guards results, finished and found while tasks finish.
+
+    /**
+     * Constructor for a search in the same order as the serial search.
+     * @param disks the number of disks in the game.
+     * @param maxMoves solutions must take fewer moves than this.
+     * @param limit the number of solutions wanted.
+     * @param splitDepth the number of moves that are split into separate tasks.
+     */
+    public ParallelEnumerator(int disks, int maxMoves, int limit, int splitDepth) {
+        if(limit < 1 || splitDepth < 0){
+            throw new IllegalArgumentException("Need a positive limit and a non-negative split depth.");
+        }
+        this.disks = disks;
+        this.maxMoves = maxMoves;
+        this.limit = limit;
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * Constructor for a search with the move order shuffled by a seed.
+     * @param disks the number of disks in the game.
+     * @param maxMoves solutions must take fewer moves than this.
+     * @param limit the number of solutions wanted.
+     * @param splitDepth the number of moves that are split into separate tasks.
+     * @param seed the seed for shuffling the move order. The same seed always gives the same result.
+     */
+    public ParallelEnumerator(int disks, int maxMoves, int limit, int splitDepth, long seed) {
+        this(disks, maxMoves, limit, splitDepth);
+        this.seeded = true;
+        this.seed = seed;
+    }
+
+    /**
+     * Finds the solutions.
+     * @param pool the pool to run the search on.
+     * @return the first 'limit' solutions in search order (fewer if there aren't that many), each
+     * being the states of the game from the start to the win.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized ArrayList<ArrayList<GameState>> enumerate(ForkJoinPool pool){
+        leaves = new ArrayList<>();
+        finished = 0;
+        found = 0;
+        cutoff = Integer.MAX_VALUE;
+
+        StatePath path = new StatePath(maxMoves + 1);
+        path.push(GameState.start(disks));
+        split(0, path);
+
+        results = new ArrayList<>(Collections.<ArrayList<ArrayList<GameState>>>nCopies(leaves.size(), null));
+        pool.invoke(new SplitTask(0, leaves.size()));
+
+        ArrayList<ArrayList<GameState>> all = new ArrayList<>();
+        for(int i = 0; i < results.size() && all.size() < limit; i++){
+            for(ArrayList<GameState> solution : results.get(i)){
+                if(all.size() == limit){
+                    break;
+                }
+                all.add(solution);
+            }
+        }
+        leaves = null;
+        results = null;
+        return all;
+    }
+
+    /**
+     * Makes a task for every way the first splitDepth moves can go, in search order.
+     * @param n the amount of moves taken so far.
+     * @param path the path of the moves done so far.
+     */
+    private void split(int n, StatePath path){
+        GameState last = path.peek();
+        if(n == splitDepth || n >= maxMoves || last.isWin()){
+            leaves.add(new Leaf(leaves.size(), n, path.toList()));
+            return;
+        }
+
+        int[] order = moveOrder(last, n);
+        for(int m : order){
+            if(last.canMove(FROM[m], TO[m])){
+                GameState next = last.copy();
+                next.moveDisk(FROM[m], TO[m]);
+                if(next.isNotRedundant(path)){
+                    path.push(next);
+                    split(n + 1, path);
+                    path.pop();
+                }
+            }
+        }
+    }
+
+    /**
+     * Works out the order the six moves are tried in at a state.
+     * @param state the state the moves are made from.
+     * @param n the amount of moves taken so far.
+     * @return the indices of the moves into FROM and TO, in the order to try them.
+     */
+    private int[] moveOrder(GameState state, int n){
+        int[] order = {0, 1, 2, 3, 4, 5};
+        if(seeded){
+            long bits = mix(seed ^ mix(state.getHash() + n));
+            for(int i = order.length - 1; i > 0; i--){ //Fisher-Yates shuffle.
+                int j = (int) ((bits >>> 8) % (i + 1));
+                bits = mix(bits);
+                int temp = order[i];
+                order[i] = order[j];
+                order[j] = temp;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Scrambles the bits of a long (the finalizer of SplitMix64).
+     * @param z the long to scramble.
+     * @return the scrambled long.
+     */
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Stores the solutions of a finished task and moves the global stop forward once the tasks
+     * at the front have found enough.
+     * @param index the index of the task.
+     * @param solutions the solutions it found.
+     */
+    private void finish(int index, ArrayList<ArrayList<GameState>> solutions){
+        synchronized(lock){
+            results.set(index, solutions);
+            while(finished < results.size() && results.get(finished) != null && cutoff == Integer.MAX_VALUE){
+                found += results.get(finished).size();
+                if(found >= limit){
+                    cutoff = finished;
+                }
+                finished++;
+            }
+        }
+    }
+
+    /**
+     * Splits the tasks in half until there is only one, so idle threads can steal work.
+     */
+    private class SplitTask extends RecursiveTask<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private int low; //The first task in this half.
+        private int high; //One past the last task in this half.
+
+        /**
+         * Constructor
+         * @param low the first task in this half.
+         * @param high one past the last task in this half.
+         */
+        SplitTask(int low, int high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected Void compute(){
+            if(high - low == 1){
+                leaves.get(low).run();
+            }
+            else if(high - low > 1){
+                int middle = (low + high) >>> 1;
+                invokeAll(new SplitTask(low, middle), new SplitTask(middle, high));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Searches every way to finish the game after one prefix of moves.
+     */
+    private class Leaf {
+
+        private int index; //The position of this task in search order.
+        private int start; //The amount of moves in the prefix.
+        private ArrayList<GameState> prefix; //The states of the prefix.
+        private ArrayList<ArrayList<GameState>> solutions; //The solutions this task found.
+
+        /**
+         * Constructor
+         * @param index the position of this task in search order.
+         * @param start the amount of moves in the prefix.
+         * @param prefix the states of the prefix.
+         */
+        Leaf(int index, int start, ArrayList<GameState> prefix) {
+            this.index = index;
+            this.start = start;
+            this.prefix = prefix;
+        }
+
+        /**
+         * Runs the search, unless earlier tasks have already found enough solutions.
+         */
+        void run(){
+            solutions = new ArrayList<>();
+            if(index < cutoff){
+                StatePath path = new StatePath(maxMoves + 1);
+                for(GameState state : prefix){
+                    path.push(state);
+                }
+                search(start, path);
+            }
+            finish(index, solutions);
+        }
+
+        /**
+         * The depth first search, the same as SolutionSet.searchRecurse.
+         * @param n the amount of moves taken so far.
+         * @param path the path of the moves done so far. Left the way it was found when the method returns.
+         */
+        private void search(int n, StatePath path){
+            if(Metrics.ENABLED){
+                NODES.increment();
+            }
+            GameState last = path.peek();
+
+            if(n >= maxMoves || solutions.size() >= limit || index > cutoff){ //Stops if too many moves, enough solutions here, or enough in earlier tasks.
+                return;
+            }
+
+            if(last.isWin()){
+                solutions.add(path.toList());
+                return;
+            }
+
+            int[] order = moveOrder(last, n);
+            for(int m : order){
+                if(last.canMove(FROM[m], TO[m])){
+                    GameState next = last.copy();
+                    next.moveDisk(FROM[m], TO[m]);
+                    if(next.isNotRedundant(path)){
+                        path.push(next);
+                        search(n + 1, path);
+                        path.pop();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package hanoi;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks a versus AI's moves one at a time from wherever its board is, as well as its skill
+ * level says: with probability skill it makes a move that takes it closer to the win, otherwise
+ * one that doesn't (picked at random, and not just taking back its last move if it has a choice).
+ * A skill of 1 always plays the best moves. Anything over 0.5 gets to the win in the end, taking
+ * longer the lower the skill. Lower than that it drifts away from the win more than towards it,
+ * and at 0 it never wins at all (the winning move always gets closer).
+ *
+ * Nothing is worked out in advance. For 3 pegs the distance of every move's result is worked
+ * out with HintOracle's rule; for more pegs it's looked up in the game's DistanceTable (shared
+ * through SolverCache), where the distance mod 3 of two boards one move apart tells which one is
+ * closer. Either way, picking a move takes a few steps per legal move. So for more than 3 pegs
+ * the game has to fit in a table (DistanceTable.fits, up to 15 disks on 4 pegs); AIPlayer plays
+ * the best moves of bigger games instead of making a SkillPolicy.
+ */
+public class SkillPolicy {
+
+    private int disks; //The number of disks in the game.
+    private int pegs; //The number of pegs in the game.
+    private double skill; //The chance of making a move that gets closer to the win.
+    private DistanceTable table; //The distances for more than 3 pegs (null for 3).
+    private GameState board; //Where the AI's disks are.
+    private int last = -1; //The AI's last move, packed (-1 before its first).
+    private int[] closer; //The moves that get closer to the win, packed (reused for every move).
+    private int[] other; //The other legal moves, packed.
+    private int[] move = new int[2]; //The move handed out by next, reused for every move.
+
+    /**
+     * Constructor. Starts with every disk on the first peg.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @param skill the chance (0 to 1) of making a move that gets closer to the win.
+     */
+    public SkillPolicy(int disks, int pegs, double skill) {
+        if(skill < 0 || skill > 1){
+            throw new IllegalArgumentException("The skill must be from 0 to 1: " + skill);
+        }
+        this.disks = disks;
+        this.pegs = pegs;
+        this.skill = skill;
+        this.board = GameState.start(disks, pegs);
+        if(pegs > 3){
+            table = SolverCache.distanceTable(disks, pegs);
+        }
+        closer = new int[pegs * pegs];
+        other = new int[pegs * pegs];
+    }
+
+    /**
+     * Picks the next move and makes it on the AI's board (make it on the real board too).
+     * @return the move ('from' stack first, 'to' stack second). The same array is handed out by
+     *         every call, so read it before asking for the next move.
+     * @throws IllegalStateException if the AI has already won.
+     */
+    public int[] next(){
+        if(board.isWin()){
+            throw new IllegalStateException("The AI has already won.");
+        }
+        int closers = 0;
+        int others = 0;
+        int back = -1; //Where in other the move taking back the last move is.
+        long distance = pegs == 3 ? HintOracle.distanceToGoal(board) : table.distanceMod3(board);
+        for(int from = 1; from <= pegs; from++){
+            for(int to = 1; to <= pegs; to++){
+                if(board.canMove(from, to)){
+                    board.moveDisk(from, to);
+                    boolean better = isCloser(distance);
+                    board.moveDisk(to, from); //Tried on the board itself, so nothing is allocated.
+                    int packed = MoveRing.pack(from - 1, to - 1) & 0xFF;
+                    if(better){
+                        closer[closers++] = packed;
+                    }
+                    else{
+                        if(last >= 0 && packed == (MoveRing.pack(MoveRing.to(last), MoveRing.from(last)) & 0xFF)){
+                            back = others;
+                        }
+                        other[others++] = packed;
+                    }
+                }
+            }
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int picked;
+        if(others == 0 || random.nextDouble() < skill){
+            picked = closer[random.nextInt(closers)];
+        }
+        else if(back >= 0 && others > 1){
+            int i = random.nextInt(others - 1);
+            picked = other[i >= back ? i + 1 : i]; //Anything but taking back the last move.
+        }
+        else{
+            picked = other[random.nextInt(others)];
+        }
+
+        last = picked;
+        move[0] = MoveRing.from(picked);
+        move[1] = MoveRing.to(picked);
+        board.moveDisk(move[0] + 1, move[1] + 1);
+        return move;
+    }
+
+    /**
+     * Checks if the board, just after a move, is closer to the win than it was before.
+     * @param before the distance before the move (mod 3 for more than 3 pegs).
+     * @return true if it's one move closer.
+     */
+    private boolean isCloser(long before){
+        if(pegs == 3){
+            return HintOracle.distanceToGoal(board) < before;
+        }
+        return table.distanceMod3(board) == (before + 2) % 3;
+    }
+
+    /**
+     * @return true once the AI has won.
+     */
+    public boolean isDone(){
+        return board.isWin();
+    }
+
+    /**
+     * Puts every disk back on the first peg, for a new game.
+     */
+    public void reset(){
+        board = GameState.start(disks, pegs);
+        last = -1;
+    }
+
+    /**
+     * Getter for skill.
+     * @return the chance of making a move that gets closer to the win.
+     */
+    public double getSkill() {
+        return skill;
+    }
+
+    /**
+     * @return where the AI's disks are (a copy).
+     */
+    public GameState getBoard(){
+        return board.copy();
+    }
+}
@@ -0,0 +1,238 @@
+package hanoi;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Picks a way to complete a Hanoi game uniformly at random out of every way that takes at most
+ * a given number of moves, without listing them. A way to complete the game is a walk through
+ * the states of the board that starts with all disks on the first peg, stops the first time all
+ * disks are on the third peg, and never undoes the move it just made (no moving a disk straight
+ * back). The number of such walks from every state is counted once, level by level, and a walk
+ * is then drawn one move at a time with each choice weighted by how many walks it leads to.
+ */
+public class SolutionSampler {
+
+    private static final int SLOTS = 4; //Counts kept per state: one per peg move a state can be reached by (at most 3), plus one for the start.
+
+    private int disks; //The number of disks in the game.
+    private int maxMoves; //The most moves a sampled game may take.
+    private int states; //The number of states (3^disks).
+
+    private long[] packed; //The packed GameState of every state index.
+    private int[] neighbors; //neighbors[s * 3 + k] is the state reached by the k-th legal move from s, or -1.
+    private int[] reverse; //reverse[s * 3 + k] is the slot of s in the neighbors of neighbors[s * 3 + k].
+
+    private long[][] counts; //counts[l][s * SLOTS + j] is the number of ways to win in exactly l moves from s, having arrived by slot j.
+    private long total; //The number of ways to win from the start in at most maxMoves moves.
+
+    /**
+     * Constructor. Counts every way to complete the game.
+     * @param disks the number of disks in the game.
+     * @param maxMoves the most moves a sampled game may take.
+     */
+    public SolutionSampler(int disks, int maxMoves) {
+        if(disks < 1 || maxMoves < 0){
+            throw new IllegalArgumentException("Need at least one disk and a non-negative number of moves.");
+        }
+        long stateCount = 1;
+        for(int i = 0; i < disks; i++){
+            stateCount *= 3;
+            if(stateCount * SLOTS > Integer.MAX_VALUE){
+                throw new IllegalArgumentException("Too many disks to count every state: " + disks);
+            }
+        }
+        this.disks = disks;
+        this.maxMoves = maxMoves;
+        this.states = (int) stateCount;
+
+        createGraph();
+        countWalks();
+    }
+
+    /**
+     * Picks a way to complete the game. Every way of at most maxMoves moves is equally likely.
+     * @param random the random number generator to use.
+     * @return the states of the game in order, from the start to the win.
+     */
+    public ArrayList<GameState> sample(Random random){
+        if(total == 0){
+            throw new IllegalStateException("The game can't be completed in " + maxMoves + " moves.");
+        }
+
+        int start = 0;
+        long pick = randomBelow(random, total);
+        int length = 0;
+        while(pick >= counts[length][start * SLOTS + 3]){ //Picks the number of moves, weighted by how many ways take that many.
+            pick -= counts[length][start * SLOTS + 3];
+            length++;
+        }
+
+        ArrayList<GameState> path = new ArrayList<>(length + 1);
+        path.add(new GameState(packed[start], disks));
+
+        int state = start;
+        int from = 3; //The slot this state was reached by (3 for the start).
+        for(int left = length; left > 0; left--){
+            pick = randomBelow(random, counts[left][state * SLOTS + from]);
+            int k = 0;
+            while(true){
+                int next = neighbors[state * 3 + k];
+                if(next >= 0 && k != from){
+                    long ways = counts[left - 1][next * SLOTS + reverse[state * 3 + k]];
+                    if(pick < ways){
+                        break;
+                    }
+                    pick -= ways;
+                }
+                k++;
+            }
+            int next = neighbors[state * 3 + k];
+            from = reverse[state * 3 + k];
+            state = next;
+            path.add(new GameState(packed[state], disks));
+        }
+        return path;
+    }
+
+    /**
+     * Getter for total.
+     * @return the number of ways to complete the game in at most maxMoves moves.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Getter for maxMoves.
+     * @return maxMoves
+     */
+    public int getMaxMoves() {
+        return maxMoves;
+    }
+
+    /**
+     * Getter for disks.
+     * @return disks
+     */
+    public int getDisks() {
+        return disks;
+    }
+
+    /**
+     * Finds the legal moves from every state. A state's index has the peg of disk d as its d-th
+     * base 3 digit, so the start is index 0 and the win is index 3^disks - 1.
+     */
+    private void createGraph(){
+        packed = new long[states];
+        neighbors = new int[states * 3];
+        reverse = new int[states * 3];
+
+        int[] power = new int[disks];
+        power[0] = 1;
+        for(int d = 1; d < disks; d++){
+            power[d] = power[d - 1] * 3;
+        }
+
+        int[] top = new int[3];
+        for(int s = 0; s < states; s++){
+            top[0] = disks;
+            top[1] = disks;
+            top[2] = disks;
+            long state = 0;
+            int rest = s;
+            for(int d = 0; d < disks; d++){
+                int peg = rest % 3;
+                rest /= 3;
+                state |= (long) peg << (2 * d);
+                if(top[peg] == disks){
+                    top[peg] = d; //The first disk found on a peg is the smallest, so it's on top.
+                }
+            }
+            packed[s] = state;
+
+            int k = 0;
+            for(int from = 0; from < 3; from++){
+                for(int to = 0; to < 3; to++){
+                    if(from != to && top[from] < top[to]){
+                        neighbors[s * 3 + k] = s + (to - from) * power[top[from]];
+                        k++;
+                    }
+                }
+            }
+            for(; k < 3; k++){
+                neighbors[s * 3 + k] = -1;
+            }
+        }
+
+        for(int s = 0; s < states; s++){
+            for(int k = 0; k < 3; k++){
+                int t = neighbors[s * 3 + k];
+                if(t >= 0){
+                    int back = 0;
+                    while(neighbors[t * 3 + back] != s){
+                        back++;
+                    }
+                    reverse[s * 3 + k] = back;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the counts variable one number of moves at a time, and adds up the total.
+     */
+    private void countWalks(){
+        int goal = states - 1;
+        counts = new long[maxMoves + 1][];
+        counts[0] = new long[states * SLOTS];
+        for(int j = 0; j < SLOTS; j++){
+            counts[0][goal * SLOTS + j] = 1; //Already won, whatever the last move was.
+        }
+
+        for(int l = 1; l <= maxMoves; l++){
+            long[] previous = counts[l - 1];
+            long[] current = new long[states * SLOTS];
+            for(int s = 0; s < states; s++){
+                if(s == goal){
+                    continue; //The game stops once it's won, so no walk goes through the win.
+                }
+                long all = 0;
+                for(int k = 0; k < 3; k++){
+                    int t = neighbors[s * 3 + k];
+                    if(t >= 0){
+                        all = Math.addExact(all, previous[t * SLOTS + reverse[s * 3 + k]]);
+                    }
+                }
+                for(int j = 0; j < 3; j++){
+                    int t = neighbors[s * 3 + j];
+                    long undo = t >= 0 ? previous[t * SLOTS + reverse[s * 3 + j]] : 0;
+                    current[s * SLOTS + j] = all - undo; //Every move except going straight back.
+                }
+                current[s * SLOTS + 3] = all;
+            }
+            counts[l] = current;
+        }
+
+        total = 0;
+        for(int l = 0; l <= maxMoves; l++){
+            total = Math.addExact(total, counts[l][3]); //The start (index 0), reached by no move.
+        }
+    }
+
+    /**
+     * Picks a random long without bias.
+     * @param random the random number generator to use.
+     * @param bound one more than the largest number that may be picked (must be positive).
+     * @return a number from 0 to bound - 1.
+     */
+    private static long randomBelow(Random random, long bound){
+        long bits;
+        long value;
+        do{
+            bits = random.nextLong() >>> 1;
+            value = bits % bound;
+        } while(bits - value + (bound - 1) < 0); //Throws away the uneven top end of the range.
+        return value;
+    }
+}
@@ -0,0 +1,180 @@
+package hanoi;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Up to 101 ways to complete a game in under 20 moves, found by a depth first search that never
+ * goes back to a state already on its path, with the tree of every move the search tried. Made
+ * once by search and never changed after, so one set is shared by every AIPlayer through
+ * SolverCache (don't change the states or the tree it hands out).
+ */
+public class SolutionSet {
+
+    private static final int MAX_MOVES = 20; //Solutions take fewer moves than this.
+    private static final int LIMIT = 100; //The search stops once it has found more solutions than this.
+
+    private static final Metrics.Histogram ENUMERATE = Metrics.histogram("ai.enumeration"); //Times search.
+    private static final Metrics.Counter NODES = Metrics.counter("ai.enumeration.nodes"); //Counts searchRecurse calls.
+
+    private int disks; //The number of disks in the game.
+    private int pegs; //The number of pegs in the game.
+    private ArrayList<List<GameState>> games; //Every solution found, as the states from the start to the win.
+    private ArrayList<byte[]> moves; //The moves of every solution, one packed byte per move (see MoveRing).
+    private CompactTree tree; //A tree that holds the possible moves.
+
+    /**
+     * Constructor. Use search to make a set.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     */
+    private SolutionSet(int disks, int pegs) {
+        this.disks = disks;
+        this.pegs = pegs;
+        this.games = new ArrayList<>();
+        this.moves = new ArrayList<>();
+    }
+
+    /**
+     * Finds the solutions, without looking in SolverCache first.
+     * @param disks the number of disks in the game.
+     * @param pegs the number of pegs in the game.
+     * @return the solutions.
+     */
+    public static SolutionSet search(int disks, int pegs){
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        SolutionSet set = new SolutionSet(disks, pegs);
+
+        GameState rootState = GameState.start(disks, pegs); //In starting position, all disks are on the first stack.
+
+        set.tree = new CompactTree(rootState);
+        StatePath currMoves = new StatePath(MAX_MOVES + 1);
+        currMoves.push(rootState);
+
+        set.searchRecurse(0, currMoves, new byte[MAX_MOVES], set.tree.getRoot().getIndex()); //Calls the recursive method.
+        set.games.trimToSize();
+        set.moves.trimToSize();
+        if(Metrics.ENABLED){
+            ENUMERATE.recordSince(start);
+        }
+        return set;
+    }
+
+    /**
+     * Recursive method, fills games, moves and tree with possible moves and ways to complete a
+     * hanoi puzzle.
+     * @param n the amount of moves taken so far.
+     * @param lastMoves The path of all the last moves done. Left the way it was found when the method returns.
+     * @param movePath The moves done so far, one packed byte per move (movePath[k] led to the k+1-th state of lastMoves).
+     * @param currParent The index of the parent that the next move will be a child of in the tree of moves.
+     */
+    private void searchRecurse(int n, StatePath lastMoves, byte[] movePath, int currParent){
+        if(Metrics.ENABLED){
+            NODES.increment();
+        }
+
+        GameState lastMove = lastMoves.peek();
+        GameState currMove;
+
+        if(n >= MAX_MOVES || games.size() > LIMIT){ //Tells the recursive function to stop if a current game method has exceeded 20 moves or if 100 solutions have already been found.
+            return;
+        }
+
+        if(lastMove.isWin()){ //Checks to see if a solution was found.
+            games.add(Collections.unmodifiableList(lastMoves.toList()));
+            moves.add(Arrays.copyOf(movePath, n)); //The moves were recorded on the way down, nothing to work out.
+            return;
+        }
+
+        for(int i = 1; i <= pegs; i++) {
+            for (int j = 1; j <= pegs; j++) {
+                if(j!=i) {
+                    if (lastMove.canMove(i, j)) {
+
+                        currMove = lastMove.copy();
+                        currMove.moveDisk(i, j);
+
+                        if(currMove.isNotRedundant(lastMoves)) { //Does not allow AI to make redundant moves (e.g. looping endlessly by moving a peg back and forth)
+                            lastMoves.push(currMove);
+                            movePath[n] = MoveRing.pack(i - 1, j - 1);
+                            int newParent = tree.addChild(currParent, currMove.getState());
+                            searchRecurse(n + 1, lastMoves, movePath, newParent);
+                            lastMoves.pop(); //Backtracks so the path can be reused for the next move.
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of solutions found.
+     */
+    public int size(){
+        return games.size();
+    }
+
+    /**
+     * Gets the states of a solution.
+     * @param index which solution (0 to size() - 1).
+     * @return the states from the start to the win (read only).
+     */
+    public List<GameState> getGame(int index){
+        return games.get(index);
+    }
+
+    /**
+     * @return every solution, as the states from the start to the win (read only).
+     */
+    public List<List<GameState>> getGames(){
+        return Collections.unmodifiableList(games);
+    }
+
+    /**
+     * Gets the moves of a solution.
+     * @param index which solution (0 to size() - 1).
+     * @return a read-only view of the moves, one packed byte per move (see MoveRing).
+     */
+    public ByteBuffer getMoves(int index){
+        return ByteBuffer.wrap(moves.get(index)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Getter for tree.
+     * @return the tree of every move the search tried (don't add to it, it's shared).
+     */
+    public CompactTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Getter for disks.
+     * @return disks
+     */
+    public int getDisks() {
+        return disks;
+    }
+
+    /**
+     * Getter for pegs.
+     * @return pegs
+     */
+    public int getPegs() {
+        return pegs;
+    }
+
+    /**
+     * Works out roughly how much memory the set takes, for SolverCache to count against its limit.
+     * @return the size in bytes.
+     */
+    public long memoryUsed(){
+        long bytes = tree.memoryUsed();
+        for(int i = 0; i < games.size(); i++){
+            bytes += 40L * games.get(i).size() + moves.get(i).length + 32; //A GameState is about 40 bytes.
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,327 @@
+package hanoi;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps the solver's results for every game size the process has needed, shared by every
+ * AIPlayer: solver files (which hold the distance tables), the best moves of games with more
+ * than 3 pegs or too many disks to sample, and the solutions createAllMoves finds. None of them
+ * change once made, so any number of players (on any threads) can read them at once, each
+ * keeping only its own place in them.
+ *
+ * Each result is made once: if several threads ask for one that isn't there yet, one makes it
+ * and the others wait for it. The cache holds up to -Dhanoi.solverCache.mb megabytes (256 by
+ * default). Past that the results used least recently are dropped (players still using them keep
+ * them until they're done), and made again if they're needed again.
+ */
+public class SolverCache {
+
+    public static final int MAX_BEST_MOVES = 1 << 24; //The most best moves kept for a game (one byte each).
+
+    private static final Metrics.Counter HITS = Metrics.counter("cache.hits"); //Results found in the cache.
+    private static final Metrics.Counter MISSES = Metrics.counter("cache.misses"); //Results that had to be made.
+    private static final Metrics.Counter EVICTIONS = Metrics.counter("cache.evictions"); //Results dropped to make room.
+
+    private static final Object lock = new Object(); //Guards entries, weight and capacity.
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); //By key, least recently used first.
+    private static long weight; //The bytes taken by every result made so far.
+    private static long capacity = Long.getLong("hanoi.solverCache.mb", 256) << 20; //The most bytes kept.
+
+    /**
+     * Gets the solver file of a game, loading (or making) it the first time.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the file.
+     */
+    public static SolverFile solverFile(final int disks, final int pegs){
+        return get("file", disks, pegs, new Loader<SolverFile>() {
+            public SolverFile call() {
+                return SolverFile.load(disks, pegs);
+            }
+            long weigh(SolverFile file) {
+                return file.memoryUsed();
+            }
+        });
+    }
+
+    /**
+     * Gets the distance table of a game (to the win). It's kept in the game's solver file, so it's
+     * only built the first time the file is made and read in place from it after that.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the table.
+     */
+    public static DistanceTable distanceTable(int disks, int pegs){
+        return solverFile(disks, pegs).getDistanceTable();
+    }
+
+    /**
+     * Gets the solver of a game's best moves, made the first time (for more than 3 pegs that works
+     * out its split table). Don't move its cursor: take a cursor() of it, as AIPlayer.solve does.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return OptimalMoves for three pegs, a FrameStewartSolver for more.
+     */
+    public static MoveSource solver(final int disks, final int pegs){
+        return get("solver", disks, pegs, new Loader<MoveSource>() {
+            public MoveSource call() {
+                if(pegs == 3){
+                    return new OptimalMoves(disks);
+                }
+                return new FrameStewartSolver(disks, pegs);
+            }
+            long weigh(MoveSource solver) {
+                return (disks + 1L) * (pegs + 1L) * 12; //The length and split tables.
+            }
+        });
+    }
+
+    /**
+     * Gets the best moves of a game, worked out the first time.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return a read-only view of the moves, one packed byte per move (see MoveRing).
+     * @throws IllegalArgumentException if the game takes more than MAX_BEST_MOVES moves.
+     */
+    public static ByteBuffer bestMoves(final int disks, final int pegs){
+        byte[] moves = get("best", disks, pegs, new Loader<byte[]>() {
+            public byte[] call() {
+                MoveSource best = AIPlayer.solve(disks, pegs);
+                if(best.size() > MAX_BEST_MOVES){
+                    throw new IllegalArgumentException("Too many moves to keep for " + disks + " disks on " + pegs + " pegs: " + best.size());
+                }
+                byte[] moves = new byte[(int) best.size()];
+                for(int k = 0; k < moves.length; k++){
+                    int[] move = best.next();
+                    moves[k] = MoveRing.pack(move[0], move[1]);
+                }
+                return moves;
+            }
+            long weigh(byte[] moves) {
+                return moves.length;
+            }
+        });
+        return ByteBuffer.wrap(moves).asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the solutions the versus AI can pick from (see SolutionSet), searching for them the first time.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the solutions.
+     */
+    public static SolutionSet solutions(final int disks, final int pegs){
+        return get("solutions", disks, pegs, new Loader<SolutionSet>() {
+            public SolutionSet call() {
+                return SolutionSet.search(disks, pegs);
+            }
+            long weigh(SolutionSet set) {
+                return set.memoryUsed();
+            }
+        });
+    }
+
+    /**
+     * Checks if a game's solver is made and in the cache, without making it.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return true if solver would hand it straight back.
+     */
+    public static boolean hasSolver(int disks, int pegs){
+        return has("solver", disks, pegs);
+    }
+
+    /**
+     * Checks if a game's solver file is loaded and in the cache, without loading it.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return true if solverFile would hand it straight back.
+     */
+    public static boolean hasSolverFile(int disks, int pegs){
+        return has("file", disks, pegs);
+    }
+
+    /**
+     * Checks if a game's best moves are worked out and in the cache, without working them out.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return true if bestMoves would hand them straight back.
+     */
+    public static boolean hasBestMoves(int disks, int pegs){
+        return has("best", disks, pegs);
+    }
+
+    /**
+     * Sets how many bytes of results are kept, dropping the least recently used ones if there are more.
+     * @param bytes the most bytes kept.
+     */
+    public static void setCapacity(long bytes){
+        synchronized(lock){
+            capacity = bytes;
+            evict();
+        }
+    }
+
+    /**
+     * @return the bytes taken by the results in the cache.
+     */
+    public static long getWeight(){
+        synchronized(lock){
+            return weight;
+        }
+    }
+
+    /**
+     * @return the number of results in the cache (including ones still being made).
+     */
+    public static int size(){
+        synchronized(lock){
+            return entries.size();
+        }
+    }
+
+    /**
+     * Drops every result. Players using them keep them.
+     */
+    public static void clear(){
+        synchronized(lock){
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Checks if a result is made (not just being made) and in the cache. Counts as using it, since
+     * it's about to be asked for, though it can still be dropped before it is.
+     * @param kind what sort of result.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return true if the result is there.
+     */
+    private static boolean has(String kind, int disks, int pegs){
+        synchronized(lock){
+            Entry entry = entries.get(kind + ":" + disks + "x" + pegs);
+            return entry != null && entry.weight >= 0;
+        }
+    }
+
+    /**
+     * Gets a result, making it if it isn't in the cache. It's made on the thread that asked first,
+     * outside the lock, so results for other games can be got (or made) at the same time.
+     * @param kind what sort of result.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @param loader makes the result and works out its size.
+     * @return the result.
+     */
+    private static <T> T get(String kind, int disks, int pegs, Loader<T> loader){
+        String key = kind + ":" + disks + "x" + pegs;
+        Entry entry;
+        boolean made = false;
+        synchronized(lock){
+            entry = entries.get(key);
+            if(entry == null){
+                entry = new Entry(new FutureTask<Object>(loader));
+                entries.put(key, entry);
+                made = true;
+            }
+        }
+        if(Metrics.ENABLED){
+            (made ? MISSES : HITS).increment();
+        }
+        if(made){
+            entry.task.run();
+        }
+
+        Object value;
+        try{
+            value = entry.task.get();
+        }
+        catch(ExecutionException e){
+            synchronized(lock){
+                if(entries.get(key) == entry){
+                    entries.remove(key); //So the next request tries again.
+                }
+            }
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            if(e.getCause() instanceof Error){
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + key, e);
+        }
+
+        @SuppressWarnings("unchecked")
+        T result = (T) value;
+        if(made){
+            long bytes = loader.weigh(result);
+            synchronized(lock){
+                if(entries.get(key) == entry){ //It could have been cleared while it was made.
+                    entry.weight = bytes;
+                    weight += bytes;
+                    evict();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops the least recently used results until the rest fit. Results still being made aren't
+     * dropped. Call holding the lock.
+     */
+    private static void evict(){
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(weight > capacity && iterator.hasNext()){
+            Entry entry = iterator.next();
+            if(entry.weight >= 0){
+                iterator.remove();
+                weight -= entry.weight;
+                if(Metrics.ENABLED){
+                    EVICTIONS.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * A result in the cache.
+     */
+    private static class Entry {
+
+        private FutureTask<Object> task; //Makes the result once, and hands it to everyone who asks.
+        private long weight = -1; //The size of the result in bytes, or -1 while it's being made.
+
+        /**
+         * Constructor
+         * @param task makes the result.
+         */
+        private Entry(FutureTask<Object> task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * Makes a result and works out how big it is.
+     */
+    private abstract static class Loader<T> implements Callable<Object> {
+
+        /**
+         * Works out how much memory a result takes.
+         * @param value the result.
+         * @return the size in bytes.
+         */
+        abstract long weigh(T value);
+    }
+}
@@ -0,0 +1,413 @@
+package hanoi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A file holding the AI's precomputed data for one number of disks and pegs, so it only has to
+ * be worked out once. The file is memory mapped and read in place (nothing is copied out of it
+ * up front). If the file is missing or is from another version, the data is worked out, written
+ * to the file, and then used. If the file can't be written the data is kept in memory instead.
+ *
+ * The layout of the file (big-endian):
+ *   header (64 bytes): magic, version, disks, pegs (ints), distanceOffset, states (longs),
+ *                      sampleCount, sampleMaxMoves (ints), samplesOffset, levelsOffset (longs),
+ *                      depth (int), padding
+ *   distances: the DistanceTable to the win, 2 bits per state (by StateIndex), 4 states to a byte
+ *   levels: depth + 1 longs, the number of states at each distance from the win
+ *   samples: sampleCount + 1 int offsets into the move bytes that follow, then the moves of every
+ *            sample, one byte per move with the 'from' stack in the high 4 bits and 'to' in the low 4
+ */
+public class SolverFile {
+
+    public static final int MAGIC = 0x484E4F49; //"HNOI"
+    public static final int VERSION = 2; //Bumped whenever the layout changes, so old files are rebuilt.
+
+    private static final int HEADER = 64; //The size of the header in bytes.
+    private static final int SAMPLES = 1000; //The number of solutions stored for versus mode.
+    private static final int SAMPLE_MAX_MOVES = 19; //The most moves a stored solution takes (more if the best solution is longer).
+    private static final int SAMPLE_LIMIT = 60; //Past this many moves the sampler's counts could overflow, so no samples are stored.
+    private static final Metrics.Histogram LOAD = Metrics.histogram("solver.load"); //Times load, building included.
+    private static final Metrics.Histogram BUILD = Metrics.histogram("solver.build"); //Times building a file that wasn't on disk.
+
+    private ByteBuffer buffer; //The whole file, mapped or in memory.
+    private int disks; //The number of disks.
+    private int pegs; //The number of pegs.
+    private long distanceOffset; //Where the distances start.
+    private long states; //The number of states.
+    private int sampleCount; //The number of stored solutions.
+    private long samplesOffset; //Where the sample offsets start.
+    private DistanceTable distances; //The distance table, read in place from buffer.
+
+    /**
+     * Constructor. Reads the header of a file already checked by isValid.
+     * @param buffer the whole file.
+     */
+    private SolverFile(ByteBuffer buffer) {
+        this.buffer = buffer;
+        disks = buffer.getInt(8);
+        pegs = buffer.getInt(12);
+        distanceOffset = buffer.getLong(16);
+        states = buffer.getLong(24);
+        sampleCount = buffer.getInt(32);
+        samplesOffset = buffer.getLong(40);
+        long levelsOffset = buffer.getLong(48);
+        long[] levelSizes = new long[buffer.getInt(56) + 1];
+        for(int d = 0; d < levelSizes.length; d++){
+            levelSizes[d] = buffer.getLong((int) levelsOffset + d * 8);
+        }
+        ByteBuffer entries = buffer.duplicate();
+        entries.position((int) distanceOffset);
+        entries.limit((int) (distanceOffset + DistanceTable.entryBytes(states)));
+        distances = new DistanceTable(entries.slice(), disks, pegs, levelSizes);
+    }
+
+    /**
+     * Loads the file for a number of disks from the default folder (the "hanoi.cache" system
+     * property, or .hanoi in the user's home folder), making it if needed.
+     * @param disks the number of disks.
+     * @return the loaded file.
+     */
+    public static SolverFile load(int disks){
+        return load(disks, 3);
+    }
+
+    /**
+     * Loads the file for a number of disks and pegs from the default folder, making it if needed.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the loaded file.
+     */
+    public static SolverFile load(int disks, int pegs){
+        String folder = System.getProperty("hanoi.cache", System.getProperty("user.home") + File.separator + ".hanoi");
+        return load(new File(folder), disks, pegs);
+    }
+
+    /**
+     * Loads the file for a number of disks from a folder, making it if needed.
+     * @param folder the folder the file is kept in.
+     * @param disks the number of disks.
+     * @return the loaded file.
+     */
+    public static SolverFile load(File folder, int disks){
+        return load(folder, disks, 3);
+    }
+
+    /**
+     * Loads the file for a number of disks and pegs from a folder, making it if needed.
+     * @param folder the folder the file is kept in.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the loaded file.
+     */
+    public static SolverFile load(File folder, int disks, int pegs){
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        SolverFile loaded = open(folder, disks, pegs);
+        if(Metrics.ENABLED){
+            LOAD.recordSince(start);
+        }
+        return loaded;
+    }
+
+    /**
+     * Maps the file for a number of disks and pegs, building and writing it first if it isn't there.
+     * @param folder the folder the file is kept in.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the loaded file.
+     */
+    private static SolverFile open(File folder, int disks, int pegs){
+        File file = new File(folder, "solver-" + disks + "x" + pegs + ".bin");
+
+        ByteBuffer mapped = map(file);
+        if(mapped != null && isValid(mapped, disks, pegs)){
+            return new SolverFile(mapped);
+        }
+
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        ByteBuffer[] built = build(disks, pegs);
+        if(Metrics.ENABLED){
+            BUILD.recordSince(start);
+        }
+        if(write(folder, file, built)){
+            mapped = map(file);
+            if(mapped != null && isValid(mapped, disks, pegs)){
+                return new SolverFile(mapped);
+            }
+        }
+        return new SolverFile(join(built)); //Couldn't use the file, so keep the data in memory.
+    }
+
+    /**
+     * Getter for distances.
+     * @return the distance of every state to the win (mod 3, see DistanceTable), read in place from the file.
+     */
+    public DistanceTable getDistanceTable() {
+        return distances;
+    }
+
+    /**
+     * Gets one of the stored solutions, read in place from the file.
+     * @param index which solution (0 to getSampleCount() - 1).
+     * @return a read-only view of the moves of the solution, one byte per move.
+     */
+    public ByteBuffer getSample(int index){
+        if(index < 0 || index >= sampleCount){
+            throw new IndexOutOfBoundsException("Sample " + index + " is outside 0.." + (sampleCount - 1));
+        }
+        int movesStart = (int) samplesOffset + (sampleCount + 1) * 4;
+        int start = buffer.getInt((int) samplesOffset + index * 4);
+        int end = buffer.getInt((int) samplesOffset + (index + 1) * 4);
+
+        ByteBuffer sample = buffer.duplicate();
+        sample.position(movesStart + start);
+        sample.limit(movesStart + end);
+        return sample.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Getter for sampleCount.
+     * @return the number of stored solutions (0 when there are too many disks to sample, or more than 3 pegs).
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Getter for disks.
+     * @return disks
+     */
+    public int getDisks() {
+        return disks;
+    }
+
+    /**
+     * Getter for pegs.
+     * @return pegs
+     */
+    public int getPegs() {
+        return pegs;
+    }
+
+    /**
+     * @return the size of the file in bytes (mapped, or in memory if it couldn't be written).
+     */
+    public long memoryUsed(){
+        return buffer.capacity();
+    }
+
+    /**
+     * Maps a file into memory.
+     * @param file the file.
+     * @return the mapped file, or null if it doesn't exist or can't be read.
+     */
+    private static ByteBuffer map(File file){
+        if(!file.isFile()){
+            return null;
+        }
+        try(RandomAccessFile input = new RandomAccessFile(file, "r");
+            FileChannel channel = input.getChannel()){
+            if(channel.size() < HEADER || channel.size() > Integer.MAX_VALUE){
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); //Stays mapped after the channel is closed.
+        }
+        catch(IOException e){
+            return null;
+        }
+    }
+
+    /**
+     * Checks that a file is a solver file of this version for the right game.
+     * @param buffer the whole file.
+     * @param disks the number of disks wanted.
+     * @param pegs the number of pegs wanted.
+     * @return true if the file can be used, false if not.
+     */
+    private static boolean isValid(ByteBuffer buffer, int disks, int pegs){
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+            return false;
+        }
+        if(buffer.getInt(8) != disks || buffer.getInt(12) != pegs){
+            return false;
+        }
+        long distanceOffset = buffer.getLong(16);
+        long states = buffer.getLong(24);
+        long samplesOffset = buffer.getLong(40);
+        long levelsOffset = buffer.getLong(48);
+        int sampleCount = buffer.getInt(32);
+        int depth = buffer.getInt(56);
+        if(states != StateIndex.count(disks, pegs) || sampleCount < 0 || depth < 0 || depth >= states
+                || distanceOffset < HEADER || distanceOffset > buffer.capacity()
+                || distanceOffset + DistanceTable.entryBytes(states) > levelsOffset
+                || levelsOffset + (depth + 1L) * 8 > samplesOffset
+                || samplesOffset + (sampleCount + 1L) * 4 > buffer.capacity()){
+            return false;
+        }
+        return hasValidSamples(buffer, samplesOffset, sampleCount);
+    }
+
+    /**
+     * Checks that the sample offsets of a file start at 0, never go down, and stay inside the
+     * file, so getSample can read them without checking.
+     * @param buffer the whole file.
+     * @param samplesOffset where the sample offsets start (already checked to be inside the file).
+     * @param sampleCount the number of samples.
+     * @return true if the offsets are sound.
+     */
+    private static boolean hasValidSamples(ByteBuffer buffer, long samplesOffset, int sampleCount){
+        long movesStart = samplesOffset + (sampleCount + 1L) * 4;
+        int previous = 0;
+        for(int i = 0; i <= sampleCount; i++){
+            int offset = buffer.getInt((int) samplesOffset + i * 4);
+            if(offset < previous || (i == 0 && offset != 0)){
+                return false;
+            }
+            previous = offset;
+        }
+        return movesStart + previous <= buffer.capacity();
+    }
+
+    /**
+     * Writes a file next to where it's going and then moves it into place, so a half written
+     * file is never loaded.
+     * @param folder the folder the file is kept in.
+     * @param file the file.
+     * @param parts what to write, one part after another.
+     * @return true if the file was written, false if not.
+     */
+    private static boolean write(File folder, File file, ByteBuffer[] parts){
+        File temp = new File(folder, file.getName() + ".tmp");
+        try{
+            Files.createDirectories(folder.toPath());
+            try(RandomAccessFile output = new RandomAccessFile(temp, "rw");
+                FileChannel channel = output.getChannel()){
+                output.setLength(0);
+                for(ByteBuffer part : parts){
+                    ByteBuffer data = part.duplicate();
+                    data.clear();
+                    while(data.hasRemaining()){
+                        channel.write(data);
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+        catch(IOException e){
+            temp.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Works out everything in the file. The distance table is handed back as it was built, so
+     * it's written straight out rather than copied into the rest of the file.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the contents of the file: the header, the distance table's entries, then the rest.
+     */
+    private static ByteBuffer[] build(int disks, int pegs){
+        long states = StateIndex.count(disks, pegs);
+        DistanceTable distances = DistanceTable.build(disks, pegs);
+        int depth = distances.getDepth();
+
+        int optimal = (1 << Math.min(disks, 30)) - 1;
+        int maxMoves = Math.max(SAMPLE_MAX_MOVES, optimal + disks); //Leaves some room for moves that aren't the best.
+        int sampleCount = pegs == 3 && maxMoves <= SAMPLE_LIMIT ? SAMPLES : 0; //The sampler only knows three pegs.
+
+        byte[][] samples = new byte[sampleCount][];
+        int moveBytes = 0;
+        if(sampleCount > 0){
+            SolutionSampler sampler = new SolutionSampler(disks, maxMoves);
+            Random random = new Random(disks);
+            for(int i = 0; i < sampleCount; i++){
+                samples[i] = toMoves(sampler.sample(random));
+                moveBytes += samples[i].length;
+            }
+        }
+
+        long distanceOffset = HEADER;
+        long levelsOffset = distanceOffset + DistanceTable.entryBytes(states);
+        long samplesOffset = levelsOffset + (depth + 1L) * 8;
+        long size = samplesOffset + (sampleCount + 1) * 4L + moveBytes;
+        if(size > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Too many disks for a solver file: " + disks);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(disks);
+        header.putInt(pegs);
+        header.putLong(distanceOffset);
+        header.putLong(states);
+        header.putInt(sampleCount);
+        header.putInt(maxMoves);
+        header.putLong(samplesOffset);
+        header.putLong(levelsOffset);
+        header.putInt(depth);
+        header.clear();
+
+        ByteBuffer rest = ByteBuffer.allocate((int) (size - levelsOffset));
+        for(int d = 0; d <= depth; d++){
+            rest.putLong(distances.getLevelSize(d));
+        }
+        int offset = 0;
+        for(int i = 0; i < sampleCount; i++){
+            rest.putInt(offset);
+            offset += samples[i].length;
+        }
+        rest.putInt(offset);
+        for(int i = 0; i < sampleCount; i++){
+            rest.put(samples[i]);
+        }
+        rest.clear();
+        return new ByteBuffer[]{header, distances.getEntries(), rest};
+    }
+
+    /**
+     * Puts the parts of a file together in memory, for when it couldn't be written.
+     * @param parts the parts, in order.
+     * @return the whole file.
+     */
+    private static ByteBuffer join(ByteBuffer[] parts){
+        long size = 0;
+        for(ByteBuffer part : parts){
+            size += part.capacity();
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        for(ByteBuffer part : parts){
+            ByteBuffer data = part.duplicate();
+            data.clear();
+            buffer.put(data);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Turns a list of states into the moves between them.
+     * @param path the states, from the start to the win.
+     * @return one byte per move: 'from' stack in the high 4 bits, 'to' stack in the low 4.
+     */
+    private static byte[] toMoves(List<GameState> path){
+        byte[] moves = new byte[path.size() - 1];
+        for(int i = 0; i < moves.length; i++){
+            long changed = path.get(i).getState() ^ path.get(i + 1).getState();
+            int disk = Long.numberOfTrailingZeros(changed) / GameState.bitsPerDisk(path.get(i).getPegs()); //Only one disk moves.
+            int from = path.get(i).pegOf(disk);
+            int to = path.get(i + 1).pegOf(disk);
+            moves[i] = (byte) (from << 4 | to);
+        }
+        return moves;
+    }
+}
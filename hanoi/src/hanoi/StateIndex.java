@@ -0,0 +1,100 @@
+package hanoi;
+
+/**
+ * Numbers every state of a Hanoi game. A state's index has the peg of disk d as its d-th digit
+ * in base 'pegs' (disk 0 is the smallest), so the start (every disk on the first peg) is index 0
+ * and the win (every disk on the last peg) is index pegs^disks - 1. Tables with one entry per
+ * state (distances, counts) are indexed this way.
+ */
+public class StateIndex {
+
+    /**
+     * Counts the states of a game.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return pegs^disks.
+     */
+    public static long count(int disks, int pegs){
+        long count = 1;
+        for(int d = 0; d < disks; d++){
+            if(count > Long.MAX_VALUE / pegs){
+                throw new IllegalArgumentException("Too many states to number: " + pegs + "^" + disks);
+            }
+            count *= pegs;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the index of a packed state.
+     * @param packed the packed state (GameState.bitsPerDisk(pegs) bits per disk).
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the index of the state.
+     */
+    public static long toIndex(long packed, int disks, int pegs){
+        int bits = GameState.bitsPerDisk(pegs);
+        long slot = (1L << bits) - 1;
+        long index = 0;
+        for(int d = disks - 1; d >= 0; d--){
+            index = index * pegs + ((packed >>> (bits * d)) & slot);
+        }
+        return index;
+    }
+
+    /**
+     * Finds the packed state with an index.
+     * @param index the index of the state.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @return the packed state (GameState.bitsPerDisk(pegs) bits per disk).
+     */
+    public static long toPacked(long index, int disks, int pegs){
+        int bits = GameState.bitsPerDisk(pegs);
+        long packed = 0;
+        for(int d = 0; d < disks; d++){
+            packed |= (index % pegs) << (bits * d);
+            index /= pegs;
+        }
+        return packed;
+    }
+
+    /**
+     * Finds every state one legal move away from a state.
+     * @param index the index of the state.
+     * @param disks the number of disks.
+     * @param pegs the number of pegs.
+     * @param out filled with the indices of the states one move away. Needs room for pegs * (pegs - 1).
+     * @param top scratch space for the top disk of each peg, pegs long (reuse it across calls).
+     * @param power scratch space for pegs^(top disk) of each peg, pegs long (reuse it across calls).
+     * @return the number of states put in out.
+     */
+    public static int neighbors(long index, int disks, int pegs, long[] out, int[] top, long[] power){
+        for(int p = 0; p < pegs; p++){
+            top[p] = disks;
+        }
+
+        long rest = index;
+        long place = 1;
+        for(int d = 0; d < disks; d++){
+            int peg = (int) (rest % pegs);
+            rest /= pegs;
+            if(top[peg] == disks){
+                top[peg] = d; //The first disk found on a peg is the smallest, so it's on top.
+                power[peg] = place;
+            }
+            place *= pegs;
+        }
+
+        int count = 0;
+        for(int from = 0; from < pegs; from++){
+            for(int to = 0; to < pegs; to++){
+                if(from != to && top[from] < top[to]){
+                    out[count] = index + (to - from) * power[from];
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,177 @@
+package hanoi;
+
+import java.util.ArrayList;
+
+/**
+ * The list of GameStates the AI has gone through to reach its current GameState. Works like a
+ * stack for backtracking (push and pop), and keeps a hash table of the states on it so that
+ * checking whether a state is already on the path doesn't have to look through the whole path.
+ * All states on a path must have the same number of disks.
+ */
+public class StatePath {
+
+    private static final int EMPTY = -1; //Marks an empty slot in the hash table.
+
+    private GameState[] path; //The states on the path, in the order they were pushed.
+    private long[] packed; //The packed state of every state on the path, for quick comparing.
+    private int size; //The number of states on the path.
+
+    private int[] table; //Open addressing hash table. Each slot holds a position on the path or EMPTY.
+    private int mask; //table.length - 1 (the table length is always a power of two).
+
+    /**
+     * Constructor
+     * @param capacity the number of states the path is expected to hold. It grows if needed.
+     */
+    public StatePath(int capacity) {
+        int length = Math.max(2, Integer.highestOneBit(Math.max(1, capacity) - 1) << 1);
+        path = new GameState[length];
+        packed = new long[length];
+        createTable(length * 2);
+    }
+
+    /**
+     * Adds a state to the end of the path.
+     * @param state the state being added.
+     */
+    public void push(GameState state){
+        if(size == path.length){
+            grow();
+        }
+        path[size] = state;
+        packed[size] = state.getState();
+        insert(size);
+        size++;
+    }
+
+    /**
+     * Removes the last state from the path.
+     * @return the state that was removed.
+     */
+    public GameState pop(){
+        size--;
+        GameState state = path[size];
+        delete(size);
+        path[size] = null;
+        return state;
+    }
+
+    /**
+     * @return the last state on the path.
+     */
+    public GameState peek(){
+        return path[size - 1];
+    }
+
+    /**
+     * Checks if a state is on the path.
+     * @param state the state being looked for.
+     * @return true if it's on the path, false if not.
+     */
+    public boolean contains(GameState state){
+        long key = state.getState();
+        int slot = slotFor(state);
+        while(table[slot] != EMPTY){
+            if(packed[table[slot]] == key){
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of states on the path.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Copies the path into a list, first state first. Used to keep a path that completes a game.
+     * @return a new list holding the states on the path.
+     */
+    public ArrayList<GameState> toList(){
+        ArrayList<GameState> list = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            list.add(path[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Puts a position on the path into the hash table.
+     * @param position the position on the path.
+     */
+    private void insert(int position){
+        int slot = slotFor(path[position]);
+        while(table[slot] != EMPTY){
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = position;
+    }
+
+    /**
+     * Takes a position on the path out of the hash table, shifting later entries of the same
+     * run back so that lookups never stop early at the hole.
+     * @param position the position on the path.
+     */
+    private void delete(int position){
+        int slot = slotFor(path[position]);
+        while(table[slot] != position){
+            slot = (slot + 1) & mask;
+        }
+
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while(table[next] != EMPTY){
+            int home = slotFor(path[table[next]]);
+            //An entry may fill the hole only if its home slot is not between the hole and itself.
+            if(((next - home) & mask) >= ((next - hole) & mask)){
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = EMPTY;
+    }
+
+    /**
+     * @param state a state.
+     * @return the home slot of the state in the hash table.
+     */
+    private int slotFor(GameState state){
+        long hash = state.getHash();
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Doubles the room for states on the path and rebuilds the hash table.
+     */
+    private void grow(){
+        int length = path.length * 2;
+        GameState[] newPath = new GameState[length];
+        long[] newPacked = new long[length];
+        System.arraycopy(path, 0, newPath, 0, size);
+        System.arraycopy(packed, 0, newPacked, 0, size);
+        path = newPath;
+        packed = newPacked;
+
+        createTable(length * 2);
+        for(int i = 0; i < size; i++){
+            insert(i);
+        }
+    }
+
+    /**
+     * Creates an empty hash table.
+     * @param length the number of slots (a power of two).
+     */
+    private void createTable(int length){
+        table = new int[length];
+        mask = length - 1;
+        for(int i = 0; i < length; i++){
+            table[i] = EMPTY;
+        }
+    }
+}